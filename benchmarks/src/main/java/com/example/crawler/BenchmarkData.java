@@ -0,0 +1,103 @@
+package com.example.crawler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Deterministic inputs shared by the benchmark suites
+final class BenchmarkData {
+    private static final String[] HOSTS = {
+            "example.com", "www.example.org", "news.example.net", "shop.example.com", "docs.example.io"
+    };
+
+    private BenchmarkData() {
+    }
+
+    // Mix of absolute http(s) links (some not in canonical form), other schemes
+    // and malformed strings, as found in real pages
+    static List<String> urls(int count, long seed) {
+        Random random = new Random(seed);
+        List<String> urls = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String host = HOSTS[random.nextInt(HOSTS.length)];
+            int kind = random.nextInt(10);
+            if (kind < 6) {
+                urls.add("https://" + host + "/articles/" + random.nextInt(100_000) + "?ref=" + random.nextInt(50));
+            } else if (kind == 6) {
+                urls.add("https://" + host.toUpperCase(Locale.ROOT) + ":443/news?utm_source=feed&id=" + random.nextInt(1000) + "#top");
+            } else if (kind == 7) {
+                urls.add("http://" + host + "/tag/" + Integer.toHexString(random.nextInt()) + "/page/" + random.nextInt(20));
+            } else if (kind == 8) {
+                urls.add("mailto:editor@" + host);
+            } else {
+                urls.add("https://" + host + "/search?q=a b|c" + random.nextInt(1000));
+            }
+        }
+        return urls;
+    }
+
+    static List<CrawlResult> results(int count, long seed) {
+        Random random = new Random(seed);
+        List<CrawlResult> results = new ArrayList<>(count);
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < count; i++) {
+            String host = HOSTS[random.nextInt(HOSTS.length)];
+            results.add(new CrawlResult(
+                    "https://" + host + "/articles/" + i,
+                    random.nextInt(20) == 0 ? 404 : 200,
+                    5_000 + random.nextInt(200_000),
+                    "https://" + host + "/",
+                    "text/html; charset=utf-8",
+                    "Article " + i + " \u2013 " + host,
+                    20 + random.nextInt(800),
+                    timestamp + i * 37L
+            ));
+        }
+        return results;
+    }
+
+    // A page of roughly the size and shape of a news front page: head
+    // boilerplate, inline script and style, navigation and linkCount anchors
+    static String html(int linkCount, long seed) {
+        Random random = new Random(seed);
+        StringBuilder html = new StringBuilder(linkCount * 160 + 4096);
+        html.append("<!DOCTYPE html><html lang=\"en\"><head><meta charset=\"utf-8\">")
+                .append("<title>Front page &amp; latest news</title>")
+                .append("<link rel=\"stylesheet\" href=\"/static/site.css\">")
+                .append("<style>.card{display:flex} a[href^=\"http\"]{color:#06c}</style>")
+                .append("<script>window.dataLayer=[];if(a<b){document.write('<a href=\"/nope\">x</a>')}</script>")
+                .append("</head><body><!-- <a href=\"/commented\">hidden</a> --><nav>");
+        for (int i = 0; i < linkCount; i++) {
+            int kind = random.nextInt(4);
+            String href = switch (kind) {
+                case 0 -> "/section/" + random.nextInt(40) + "/story-" + i;
+                case 1 -> "https://" + HOSTS[random.nextInt(HOSTS.length)] + "/a/" + i;
+                case 2 -> "../related/" + i + "?utm_source=home&amp;utm_medium=web";
+                default -> "story-" + i + ".html#comments";
+            };
+            html.append("<div class=\"card\"><a class=\"headline\" href=\"").append(href).append("\">")
+                    .append("Headline number ").append(i).append("</a><p>Summary text for story ")
+                    .append(i).append(" with <b>markup</b> inside.</p></div>\n");
+        }
+        html.append("</nav><footer><a href=\"/about\">About</a></footer></body></html>");
+        return html.toString();
+    }
+
+    static void deleteRecursively(Path dir) {
+        if (dir == null || !Files.exists(dir)) return;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.crawler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Whole crawls of a synthetic site served from this JVM: fetch, parse, dedupe,
+// frontier and SQLite writes together. Each measured invocation crawls every
+// page once; pages and fanout size the site graph.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EndToEndCrawlBenchmark {
+    private static final long CRAWL_TIMEOUT_MS = 10 * 60_000;
+
+    @Param({"2000"})
+    public int pages;
+
+    @Param({"8"})
+    public int fanout;
+
+    @Param({"16"})
+    public int threads;
+
+    @Param({CrawlRequest.MODE_PLATFORM, CrawlRequest.MODE_VIRTUAL})
+    public String executionMode;
+
+    @Param({Fetcher.BACKEND_JSOUP, Fetcher.BACKEND_HTTPCLIENT})
+    public String fetcher;
+
+    @Param({CrawlRequest.EXTRACT_DOM, CrawlRequest.EXTRACT_STREAM})
+    public String extractionMode;
+
+    @Param({HostController.MODE_FIXED})
+    public String hostControl;
+
+    private SyntheticSite site;
+    private Path dir;
+    private CrawlerService service;
+    private CrawlRequest request;
+
+    @Setup(Level.Trial)
+    public void startSite() throws IOException {
+        site = SyntheticSite.start(pages, fanout);
+        request = JsonUtil.parseCrawlRequest("{"
+                + "\"seedUrl\":\"" + site.seedUrl() + "\","
+                + "\"maxDepth\":1000,"
+                + "\"threads\":" + threads + ","
+                + "\"executionMode\":\"" + executionMode + "\","
+                + "\"fetcher\":\"" + fetcher + "\","
+                + "\"extractionMode\":\"" + extractionMode + "\","
+                + "\"hostControl\":\"" + hostControl + "\","
+                + "\"expectedUrls\":" + pages
+                + "}");
+    }
+
+    @TearDown(Level.Trial)
+    public void stopSite() {
+        site.close();
+    }
+
+    // A fresh database and frontier directory per crawl
+    @Setup(Level.Invocation)
+    public void newService() throws IOException {
+        dir = Files.createTempDirectory("crawler-e2e-bench");
+        service = new CrawlerService(dir.resolve("frontier"), new DatabaseManager(dir.resolve("bench.db"),
+                DatabaseManager.DEFAULT_BATCH_SIZE, DatabaseManager.DEFAULT_FLUSH_INTERVAL_MS,
+                DatabaseManager.DEFAULT_QUEUE_CAPACITY));
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeService() {
+        service.shutdown();
+        BenchmarkData.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public int crawl() throws InterruptedException {
+        service.start(request);
+        long deadline = System.currentTimeMillis() + CRAWL_TIMEOUT_MS;
+        while (service.getStatus().running()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Crawl did not finish within " + CRAWL_TIMEOUT_MS + " ms");
+            }
+            Thread.sleep(2);
+        }
+        Status status = service.getStatus();
+        if (status.completedTasks() != pages) {
+            throw new IllegalStateException("Crawled " + status.completedTasks() + " of " + pages + " pages");
+        }
+        return status.completedTasks();
+    }
+}
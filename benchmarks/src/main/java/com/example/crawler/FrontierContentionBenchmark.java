@@ -0,0 +1,129 @@
+package com.example.crawler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Throughput of Frontier.add as more workers queue links at once, while a
+// dispatcher thread drains the frontier with take() the way the crawl does.
+// Every fourth link is a repeat, which best-first turns into a priority bump.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrontierContentionBenchmark {
+    private static final int TASKS = 1 << 16;
+
+    @State(Scope.Benchmark)
+    public static class Queue {
+        @Param({FrontierOrder.MODE_FIFO, FrontierOrder.MODE_BFS, FrontierOrder.MODE_BEST_FIRST})
+        public String order;
+
+        Path dir;
+        CrawlerService service;
+        CrawlTask[] tasks;
+        Frontier frontier;
+        Thread dispatcher;
+
+        @Setup(Level.Trial)
+        public void prepare() throws IOException {
+            dir = Files.createTempDirectory("crawler-frontier-bench");
+            service = new CrawlerService(dir.resolve("frontier"), new DatabaseManager(dir.resolve("bench.db"),
+                    DatabaseManager.DEFAULT_BATCH_SIZE, DatabaseManager.DEFAULT_FLUSH_INTERVAL_MS,
+                    DatabaseManager.DEFAULT_QUEUE_CAPACITY));
+            tasks = new CrawlTask[TASKS];
+            for (int i = 0; i < TASKS; i++) {
+                tasks[i] = new CrawlTask("https://host" + (i % 251) + ".example.com/path/" + i, 1 + i % 7, "", service);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void cleanUp() {
+            service.shutdown();
+            BenchmarkData.deleteRecursively(dir);
+        }
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            CrawlRequest req = JsonUtil.parseCrawlRequest("{\"frontierOrder\":\"" + order + "\"}");
+            frontier = new Frontier(0, Integer.MAX_VALUE, null, null, null, FrontierOrder.create(req), 0);
+            dispatcher = new Thread(() -> {
+                try {
+                    while (true) {
+                        frontier.taskDone(frontier.take());
+                    }
+                } catch (InterruptedException e) {
+                    // iteration over
+                }
+            }, "frontier-bench-dispatcher");
+            dispatcher.setDaemon(true);
+            dispatcher.start();
+        }
+
+        @TearDown(Level.Iteration)
+        public void stopDispatcher() throws InterruptedException {
+            dispatcher.interrupt();
+            dispatcher.join();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        @Setup
+        public void start() {
+            next = (int) (Thread.currentThread().getId() * 7919) & (TASKS - 1);
+        }
+    }
+
+    private static void add(Queue queue, Cursor cursor) {
+        int i = cursor.next = (cursor.next + 1) & (TASKS - 1);
+        if ((i & 3) == 0) {
+            queue.frontier.linkedAgain(queue.tasks[i >>> 2].url());
+        } else {
+            queue.frontier.add(queue.tasks[i]);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void threads01(Queue queue, Cursor cursor) {
+        add(queue, cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void threads04(Queue queue, Cursor cursor) {
+        add(queue, cursor);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void threads16(Queue queue, Cursor cursor) {
+        add(queue, cursor);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void threads64(Queue queue, Cursor cursor) {
+        add(queue, cursor);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.crawler;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+// Serializing a result list the way /api/results answers it: the pretty Gson
+// string it used to return against JsonStreamWriter, compact, indented and
+// gzipped. The streaming cases write to a stream that only counts bytes, as
+// the servlet stream would take them without a copy.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class JsonSerializationBenchmark {
+    @Param({"10000", "1000000"})
+    public int results;
+
+    private List<CrawlResult> data;
+    private final Gson prettyGson = new GsonBuilder().setPrettyPrinting().create();
+    private final Gson gson = new Gson();
+
+    // Stands in for the servlet stream: counts what would be sent
+    private static final class CountingStream extends OutputStream {
+        long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        data = BenchmarkData.results(results, 3);
+    }
+
+    @Benchmark
+    public long gsonPretty() {
+        return prettyGson.toJson(data).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Benchmark
+    public long gsonCompact() {
+        return gson.toJson(data).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Benchmark
+    public long streaming() throws IOException {
+        return write(new CountingStream(), false);
+    }
+
+    @Benchmark
+    public long streamingPretty() throws IOException {
+        return write(new CountingStream(), true);
+    }
+
+    @Benchmark
+    public long streamingGzip() throws IOException {
+        CountingStream counter = new CountingStream();
+        // At the level Main uses for streamed responses
+        GZIPOutputStream gzip = new GZIPOutputStream(counter, 8 * 1024) {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        };
+        try (JsonStreamWriter json = new JsonStreamWriter(gzip, false)) {
+            JsonUtil.writeResults(json, data);
+        }
+        return counter.bytes;
+    }
+
+    private long write(CountingStream counter, boolean pretty) throws IOException {
+        try (JsonStreamWriter json = new JsonStreamWriter(counter, pretty)) {
+            JsonUtil.writeResults(json, data);
+        }
+        return counter.bytes;
+    }
+}
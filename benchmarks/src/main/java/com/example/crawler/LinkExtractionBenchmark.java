@@ -0,0 +1,127 @@
+package com.example.crawler;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Title and link extraction from an in-memory page: the DOM path (Jsoup parse
+// plus a[href] select) against the streaming LinkExtractor. dom and stream use
+// a generated page of the given number of links; savedDom and savedStream go
+// through the real pages under resources/pages (see the README there) and
+// report the average per page. Run with -prof gc to compare allocation per
+// page as well.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinkExtractionBenchmark {
+    private static final String PAGE_URL = "https://www.example.org/news/index.html";
+    private static final int SAVED_PAGES = 4;
+
+    record Page(byte[] html, String charset, String url) {}
+
+    @State(Scope.Benchmark)
+    public static class Generated {
+        @Param({"50", "500"})
+        public int links;
+
+        Page page;
+
+        @Setup
+        public void setup() {
+            page = new Page(BenchmarkData.html(links, 7).getBytes(StandardCharsets.UTF_8), "UTF-8", PAGE_URL);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Saved {
+        Page[] pages;
+
+        @Setup
+        public void setup() {
+            pages = new Page[] {
+                    load("nodejs-api-url.html", "UTF-8", "https://nodejs.org/docs/latest-v20.x/api/url.html"),
+                    load("nodejs-api-index.html", "UTF-8", "https://nodejs.org/docs/latest-v20.x/api/index.html"),
+                    load("underscorejs-index.html", "UTF-8", "https://underscorejs.org/"),
+                    load("zlib-how.html", "ISO-8859-1", "https://zlib.net/zlib_how.html")
+            };
+        }
+
+        private static Page load(String file, String charset, String url) {
+            try (InputStream in = LinkExtractionBenchmark.class.getResourceAsStream("/pages/" + file)) {
+                if (in == null) {
+                    throw new IllegalStateException("Missing benchmark page " + file);
+                }
+                return new Page(in.readAllBytes(), charset, url);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Benchmark
+    public void dom(Generated generated, Blackhole bh) throws IOException {
+        dom(generated.page, bh);
+    }
+
+    @Benchmark
+    public void stream(Generated generated, Blackhole bh) throws IOException {
+        stream(generated.page, bh);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAVED_PAGES)
+    public void savedDom(Saved saved, Blackhole bh) throws IOException {
+        for (Page page : saved.pages) {
+            dom(page, bh);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAVED_PAGES)
+    public void savedStream(Saved saved, Blackhole bh) throws IOException {
+        for (Page page : saved.pages) {
+            stream(page, bh);
+        }
+    }
+
+    private static void dom(Page page, Blackhole bh) throws IOException {
+        Document doc = Jsoup.parse(new ByteArrayInputStream(page.html()), page.charset(), page.url());
+        Set<String> found = new LinkedHashSet<>();
+        for (Element anchor : doc.select("a[href]")) {
+            found.add(anchor.attr("abs:href"));
+        }
+        bh.consume(doc.title());
+        bh.consume(found);
+    }
+
+    private static void stream(Page page, Blackhole bh) throws IOException {
+        LinkExtractor.Extraction extraction =
+                LinkExtractor.extract(new ByteArrayInputStream(page.html()), page.charset(), page.url(), true);
+        bh.consume(extraction.title());
+        bh.consume(extraction.links());
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.crawler;
+
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Retained heap per result in ResultBuffer, measured with JOL: a plain array
+// of CrawlResults as the buffer used to hold them against the packed ring.
+// The results are shaped like a crawl's: each page's referrer is the URL
+// string of a page fetched before it and every response parses its own
+// Content-Type header.
+//
+//   java -cp target/benchmarks.jar com.example.crawler.ResultFootprint [results]
+public final class ResultFootprint {
+    private static final String[] CONTENT_TYPES = {
+            "text/html; charset=utf-8", "text/html; charset=UTF-8", "text/html", "application/xhtml+xml"
+    };
+
+    private ResultFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : ResultBuffer.DEFAULT_CAPACITY;
+        List<CrawlResult> results = crawlResults(count, 42);
+
+        CrawlResult[] plain = results.toArray(new CrawlResult[0]);
+        ResultBuffer buffer = new ResultBuffer(count);
+        results.forEach(buffer::add);
+
+        long plainBytes = GraphLayout.parseInstance((Object) plain).totalSize();
+        long packedBytes = GraphLayout.parseInstance(buffer).totalSize();
+        System.out.println(ClassLayout.parseClass(CrawlResult.class).toPrintable());
+        System.out.println(ClassLayout.parseClass(CompactResult.class).toPrintable());
+        System.out.printf("%d results%n", count);
+        System.out.printf("CrawlResult[]  %,12d bytes  %7.1f per result%n", plainBytes, (double) plainBytes / count);
+        System.out.printf("ResultBuffer   %,12d bytes  %7.1f per result%n", packedBytes, (double) packedBytes / count);
+    }
+
+    static List<CrawlResult> crawlResults(int count, long seed) {
+        Random random = new Random(seed);
+        List<CrawlResult> results = new ArrayList<>(count);
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < count; i++) {
+            String url = "https://site" + random.nextInt(50) + ".example.com/articles/" + i
+                    + "/a-fairly-typical-slug?page=" + random.nextInt(10);
+            String referrer = i == 0 ? "" : results.get(random.nextInt(i)).url();
+            results.add(new CrawlResult(
+                    url,
+                    random.nextInt(20) == 0 ? 404 : 200,
+                    5_000 + random.nextInt(200_000),
+                    referrer,
+                    new String(CONTENT_TYPES[random.nextInt(CONTENT_TYPES.length)].toCharArray()),
+                    "Article " + i + " | Example News",
+                    20 + random.nextInt(800),
+                    timestamp + i * 37L
+            ));
+        }
+        return results;
+    }
+}
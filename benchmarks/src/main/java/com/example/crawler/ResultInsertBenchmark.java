@@ -0,0 +1,66 @@
+package com.example.crawler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// DatabaseManager.insertResult through to a committed row. batchSize=1 gives
+// one transaction per row, like the original synchronous insert; the default
+// groups up to 500 rows per commit. Each invocation inserts ROWS results and
+// waits for them to be on disk.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class ResultInsertBenchmark {
+    private static final int ROWS = 1000;
+
+    @Param({"1", "500"})
+    public int batchSize;
+
+    private Path dir;
+    private DatabaseManager db;
+    private List<CrawlResult> results;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("crawler-insert-bench");
+        db = new DatabaseManager(dir.resolve("bench.db"), batchSize,
+                DatabaseManager.DEFAULT_FLUSH_INTERVAL_MS, DatabaseManager.DEFAULT_QUEUE_CAPACITY);
+        results = BenchmarkData.results(ROWS, 11);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+        BenchmarkData.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void insertResult() {
+        for (CrawlResult result : results) {
+            db.insertResult(result);
+        }
+        db.flush();
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.crawler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// RobotsTxt.isAllowed against ordinary rules and a hostile one: stars followed
+// by a character the path never contains, which made the old backtracking
+// matcher exponential in the number of stars (a 100-char path took minutes)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RobotsMatchBenchmark {
+    @Param({"/private/", "/*.php$", "/*a*a*a*a*a*a*b"})
+    public String disallow;
+
+    @Param({"50", "100", "1000"})
+    public int pathLength;
+
+    private RobotsTxt robots;
+    private String path;
+
+    @Setup
+    public void setup() {
+        robots = RobotsTxt.parse("User-agent: *\nDisallow: " + disallow + "\n");
+        path = "/" + "a".repeat(pathLength - 1);
+    }
+
+    @Benchmark
+    public boolean isAllowed() {
+        return robots.isAllowed("MultiCrawler", path);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.crawler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Throughput of the crawl's shared seen-URL set (which replaced VISITED_INFO)
+// as more workers hit it at once. Each thread adds a mix of new URLs and
+// repeats, like link discovery does; the store is rebuilt every iteration.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SeenUrlContentionBenchmark {
+    private static final int URL_SPACE = 1 << 20;
+
+    @State(Scope.Benchmark)
+    public static class Store {
+        @Param({SeenUrlStore.MODE_EXACT, SeenUrlStore.MODE_BLOOM})
+        public String mode;
+
+        SeenUrlStore seen;
+        String[] urls;
+
+        @Setup(Level.Trial)
+        public void prepare() {
+            urls = new String[URL_SPACE];
+            for (int i = 0; i < URL_SPACE; i++) {
+                urls[i] = "https://host" + (i % 997) + ".example.com/path/" + i;
+            }
+        }
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            seen = SeenUrlStore.create(JsonUtil.parseCrawlRequest(
+                    "{\"seenStore\":\"" + mode + "\",\"expectedUrls\":" + URL_SPACE + "}"));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        @Setup
+        public void start() {
+            next = (int) (Thread.currentThread().getId() * 7919) & (URL_SPACE - 1);
+        }
+
+        String nextUrl(Store store) {
+            next = (next + 1) & (URL_SPACE - 1);
+            return store.urls[next];
+        }
+    }
+
+    private static boolean add(Store store, Cursor cursor) {
+        return store.seen.add(cursor.nextUrl(store));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean threads01(Store store, Cursor cursor) {
+        return add(store, cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean threads04(Store store, Cursor cursor) {
+        return add(store, cursor);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean threads16(Store store, Cursor cursor) {
+        return add(store, cursor);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean threads64(Store store, Cursor cursor) {
+        return add(store, cursor);
+    }
+}
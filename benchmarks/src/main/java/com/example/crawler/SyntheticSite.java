@@ -0,0 +1,75 @@
+package com.example.crawler;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Local HTTP server for end-to-end runs. Page /p<n> links to fanout other pages
+// chosen so that every one of the `pages` pages is reachable from /p0.
+final class SyntheticSite implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService pool;
+    private final int pages;
+    private final int fanout;
+
+    private SyntheticSite(HttpServer server, ExecutorService pool, int pages, int fanout) {
+        this.server = server;
+        this.pool = pool;
+        this.pages = pages;
+        this.fanout = fanout;
+    }
+
+    // Binds an ephemeral port on the loopback interface
+    static SyntheticSite start(int pages, int fanout) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        SyntheticSite site = new SyntheticSite(server, pool, Math.max(1, pages), Math.max(1, fanout));
+        server.createContext("/", exchange -> {
+            byte[] body = site.page(pageId(exchange.getRequestURI().getPath()));
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(pool);
+        server.start();
+        return site;
+    }
+
+    String seedUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/p0";
+    }
+
+    private byte[] page(int id) {
+        StringBuilder html = new StringBuilder(256 + fanout * 64);
+        html.append("<!DOCTYPE html><html><head><title>Page ").append(id).append("</title>")
+                .append("<style>body{font-family:sans-serif}</style></head><body>")
+                .append("<h1>Page ").append(id).append("</h1><p>Synthetic page for crawl benchmarks.</p><ul>");
+        for (int i = 1; i <= fanout; i++) {
+            long target = ((long) id * fanout + i) % pages;
+            html.append("<li><a href=\"/p").append(target).append("\">Page ").append(target).append("</a></li>");
+        }
+        html.append("</ul></body></html>");
+        return html.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int pageId(String path) {
+        try {
+            return Integer.parseInt(path.substring(path.lastIndexOf('/') + 2));
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        pool.shutdownNow();
+    }
+}
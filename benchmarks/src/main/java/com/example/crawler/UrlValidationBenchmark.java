@@ -0,0 +1,82 @@
+package com.example.crawler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+// Cost of the per-link check in CrawlTask.enqueueLinks: UrlPolicy.accept
+// (canonicalize, then filter) against the java.net.URI parse it replaced, with
+// and without a filter regex and tracking-parameter stripping
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UrlValidationBenchmark {
+    private static final int URLS = 1024;
+
+    @Param({"none", "https?://(www\\.)?example\\.(com|org)/.*"})
+    public String filter;
+
+    @Param({"false", "true"})
+    public boolean stripTracking;
+
+    private UrlPolicy policy;
+    private Pattern pattern;
+    private List<String> urls;
+
+    @Setup
+    public void setup() {
+        String regex = "none".equals(filter) ? null : filter;
+        policy = new UrlPolicy(regex, 3, stripTracking);
+        pattern = regex != null ? Pattern.compile(regex) : null;
+        urls = BenchmarkData.urls(URLS, 42);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(URLS)
+    public int accept() {
+        int valid = 0;
+        for (String url : urls) {
+            if (policy.accept(url) != null) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    // The check CrawlTask did per link before UrlPolicy, without canonicalization
+    @Benchmark
+    @OperationsPerInvocation(URLS)
+    public int uriParse() {
+        int valid = 0;
+        for (String url : urls) {
+            try {
+                String scheme = new URI(url).getScheme();
+                if ((pattern == null || pattern.matcher(url).matches())
+                        && ("http".equals(scheme) || "https".equals(scheme))) {
+                    valid++;
+                }
+            } catch (URISyntaxException e) {
+                // invalid
+            }
+        }
+        return valid;
+    }
+}
@@ -0,0 +1,318 @@
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+// Runs a cluster crawl on localhost and checks that membership changes in the
+// middle of it rebalance cleanly: a coordinator and WORKERS workers crawl a
+// generated site spread over HOSTS loopback addresses (127.0.0.1 up to
+// 127.0.0.HOSTS), one more worker joins once a quarter of the site is fetched
+// and one of the first workers leaves at half. The run passes when
+// - every join and leave moves the epoch exactly once, so no worker missed
+//   heartbeats long enough to be dropped and join again,
+// - the late worker gets hosts and fetches pages,
+// - the crawl finishes with every reachable page fetched, so the leaving
+//   worker's queue was handed off.
+// Pages fetched more than once are reported but do not fail the run. Started
+// by scripts/cluster-localhost.sh, which builds the classpath; every process
+// logs to its own directory under the printed work directory.
+public class ClusterHarness {
+    private static final int COORDINATOR_PORT = intEnv("COORDINATOR_PORT", 4700);
+    private static final int SITE_PORT = intEnv("SITE_PORT", 4800);
+    private static final int WORKERS = intEnv("WORKERS", 3);
+    private static final int HOSTS = intEnv("HOSTS", 20);
+    private static final int PAGES = intEnv("PAGES", 2000);
+    private static final int PAGE_DELAY_MS = intEnv("PAGE_DELAY_MS", 50);
+    private static final int LINKS_PER_PAGE = 6;
+    private static final long STEP_TIMEOUT_MS = 120_000;
+    private static final long CRAWL_TIMEOUT_MS = 10 * 60_000;
+
+    private static final HttpClient HTTP = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+    private static final Map<String, Process> processes = new LinkedHashMap<>();
+    private static final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    private static final long started = System.currentTimeMillis();
+    private static Path workDir;
+
+    public static void main(String[] args) throws Exception {
+        workDir = Files.createTempDirectory("cluster-harness");
+        System.out.println("Logs in " + workDir);
+        Runtime.getRuntime().addShutdownHook(new Thread(ClusterHarness::stopAll));
+        HttpServer site = startSite();
+        boolean passed = false;
+        try {
+            passed = run();
+        } catch (IllegalStateException e) {
+            System.out.println("  FAILED: " + e.getMessage());
+        } finally {
+            stopAll();
+            site.stop(0);
+        }
+        System.out.println(passed ? "PASS" : "FAIL");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static boolean run() throws Exception {
+        Set<String> reachable = reachablePages();
+        start("coordinator", Map.of("CLUSTER_ROLE", "coordinator", "PORT", Integer.toString(COORDINATOR_PORT)));
+        awaitUp(COORDINATOR_PORT);
+        for (int i = 1; i <= WORKERS; i++) {
+            startWorker(i);
+        }
+        await("all " + WORKERS + " workers joined", () -> memberCount() == WORKERS);
+        long epoch = epoch();
+
+        JsonObject request = new JsonObject();
+        request.addProperty("seedUrl", pageUrl(1, 0));
+        request.addProperty("maxDepth", 1000);
+        request.addProperty("threads", 8);
+        request.addProperty("delay", 0);
+        request.addProperty("ignoreRobots", true);
+        post(coordinator() + "/api/cluster/start", request.toString());
+        System.out.println("Crawl started, " + reachable.size() + " pages reachable from the seed");
+
+        int late = WORKERS + 1;
+        await("a quarter of the site fetched", () -> hits.size() >= reachable.size() / 4);
+        startWorker(late);
+        await("worker " + late + " joined", () -> memberCount() == WORKERS + 1);
+        boolean ok = check(epoch() == epoch + 1, "one epoch for the join, got " + (epoch() - epoch));
+
+        await("half of the site fetched", () -> hits.size() >= reachable.size() / 2);
+        Process leaving = processes.get(workerId(1));
+        leaving.destroy();
+        await("worker 1 left", () -> memberCount() == WORKERS);
+        ok &= check(epoch() == epoch + 2, "one epoch for the leave, got " + (epoch() - epoch - 1));
+
+        await("the crawl finished", CRAWL_TIMEOUT_MS, () -> "finished".equals(status().get("state").getAsString()));
+        long completedByLate = completedBy(workerId(late));
+        ok &= check(epoch() == epoch + 2, "no further membership changes, epoch moved "
+                + (epoch() - epoch - 2) + " more times");
+        ok &= check(completedByLate > 0, "worker " + late + " fetched " + completedByLate + " pages");
+        Set<String> missing = new HashSet<>(reachable);
+        missing.removeAll(hits.keySet());
+        ok &= check(missing.isEmpty(), "every reachable page fetched, " + missing.size() + " missing");
+        long repeated = hits.values().stream().filter(count -> count.get() > 1).count();
+        System.out.println("  " + hits.size() + " pages fetched, " + repeated + " of them more than once");
+        return ok;
+    }
+
+    // Page n of host h links to LINKS_PER_PAGE pages spread over all hosts
+    private static HttpServer startSite() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("0.0.0.0", SITE_PORT), 512);
+        server.setExecutor(Executors.newFixedThreadPool(64));
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            String host = exchange.getRequestHeaders().getFirst("Host");
+            if (!path.matches("/p\\d+") || host == null) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            int h = Integer.parseInt(host.substring(host.lastIndexOf('.') + 1, host.indexOf(':')));
+            int n = Integer.parseInt(path.substring(2));
+            hits.computeIfAbsent(pageUrl(h, n), url -> new AtomicInteger()).incrementAndGet();
+            try {
+                Thread.sleep(PAGE_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            StringBuilder html = new StringBuilder("<html><head><title>p" + n + "</title></head><body>");
+            for (String link : links(h, n)) {
+                html.append("<a href=\"").append(link).append("\">x</a>");
+            }
+            byte[] body = html.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+
+    private static List<String> links(int h, int n) {
+        List<String> links = new ArrayList<>();
+        for (int i = 1; i <= LINKS_PER_PAGE; i++) {
+            links.add(pageUrl((h * 7 + n * 3 + i * 11) % HOSTS + 1, (n * 5 + i * 13 + h) % PAGES));
+        }
+        return links;
+    }
+
+    private static String pageUrl(int h, int n) {
+        return "http://127.0.0." + h + ":" + SITE_PORT + "/p" + n;
+    }
+
+    private static Set<String> reachablePages() {
+        Set<String> seen = new HashSet<>();
+        ArrayDeque<int[]> queue = new ArrayDeque<>();
+        queue.add(new int[] {1, 0});
+        seen.add(pageUrl(1, 0));
+        while (!queue.isEmpty()) {
+            int[] page = queue.poll();
+            for (int i = 1; i <= LINKS_PER_PAGE; i++) {
+                int h = (page[0] * 7 + page[1] * 3 + i * 11) % HOSTS + 1;
+                int n = (page[1] * 5 + i * 13 + page[0]) % PAGES;
+                if (seen.add(pageUrl(h, n))) {
+                    queue.add(new int[] {h, n});
+                }
+            }
+        }
+        return seen;
+    }
+
+    private static void startWorker(int i) throws IOException {
+        int port = COORDINATOR_PORT + i;
+        start(workerId(i), Map.of("CLUSTER_COORDINATOR", coordinator(), "PORT", Integer.toString(port)));
+    }
+
+    private static String workerId(int i) {
+        return "worker-" + (COORDINATOR_PORT + i);
+    }
+
+    // Each node gets its own directory, so its database and spill files too
+    private static void start(String name, Map<String, String> env) throws IOException {
+        File dir = workDir.resolve(name).toFile();
+        dir.mkdirs();
+        ProcessBuilder builder = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), "com.example.crawler.Main")
+                .directory(dir)
+                .redirectErrorStream(true)
+                .redirectOutput(new File(dir, "out.log"));
+        builder.environment().putAll(env);
+        processes.put(name, builder.start());
+        System.out.println("Started " + name);
+    }
+
+    private static void stopAll() {
+        for (Process process : processes.values()) {
+            process.destroy();
+        }
+        for (Process process : processes.values()) {
+            try {
+                process.waitFor();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static String coordinator() {
+        return "http://localhost:" + COORDINATOR_PORT;
+    }
+
+    private static JsonObject status() {
+        try {
+            HttpResponse<String> response = HTTP.send(HttpRequest.newBuilder(URI.create(coordinator() + "/api/cluster"))
+                    .timeout(Duration.ofSeconds(5)).build(), HttpResponse.BodyHandlers.ofString());
+            return JsonParser.parseString(response.body()).getAsJsonObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Coordinator unreachable: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long epoch() {
+        return status().get("epoch").getAsLong();
+    }
+
+    private static int memberCount() {
+        return status().getAsJsonArray("members").size();
+    }
+
+    private static long completedBy(String id) {
+        JsonArray members = status().getAsJsonArray("members");
+        for (JsonElement element : members) {
+            JsonObject member = element.getAsJsonObject();
+            if (id.equals(member.getAsJsonObject("member").get("id").getAsString())) {
+                JsonElement report = member.get("report");
+                return report == null || report.isJsonNull() ? 0 : report.getAsJsonObject().get("completed").getAsLong();
+            }
+        }
+        return 0;
+    }
+
+    private static void post(String url, String json) throws IOException, InterruptedException {
+        HttpResponse<String> response = HTTP.send(HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IOException(url + " answered " + response.statusCode() + ": " + response.body());
+        }
+    }
+
+    private static void awaitUp(int port) {
+        await("port " + port + " answering", () -> {
+            try {
+                HTTP.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/cluster")).build(),
+                        HttpResponse.BodyHandlers.discarding());
+                return true;
+            } catch (IOException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        });
+    }
+
+    private static void await(String what, BooleanSupplier condition) {
+        await(what, STEP_TIMEOUT_MS, condition);
+    }
+
+    private static void await(String what, long timeoutMs, BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Timed out waiting for " + what);
+            }
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+        System.out.printf("  %s (%.1f s)%n", what, (System.currentTimeMillis() - started) / 1000.0);
+    }
+
+    private static boolean check(boolean passed, String what) {
+        System.out.println((passed ? "  ok: " : "  FAILED: ") + what);
+        return passed;
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value);
+    }
+}
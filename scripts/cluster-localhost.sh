@@ -0,0 +1,11 @@
+#!/bin/bash
+# Runs ClusterHarness: a coordinator and WORKERS (default 3) workers on
+# localhost crawling a generated site, with a worker joining and one leaving
+# mid-crawl. Exits non-zero if rebalancing went wrong. COORDINATOR_PORT
+# (4700, workers take the ports after it), SITE_PORT (4800), HOSTS, PAGES and
+# PAGE_DELAY_MS size the run.
+set -euo pipefail
+cd "$(dirname "$0")/.."
+mvn -B -q compile
+mvn -B -q dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+exec java -cp "$PWD/target/classes:$(cat target/classpath.txt)" scripts/ClusterHarness.java
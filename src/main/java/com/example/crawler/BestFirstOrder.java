@@ -0,0 +1,40 @@
+package com.example.crawler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+// Best-first ordering: a URL scores one point per link to it found while it
+// waits in the frontier, plus the weight of every urlWeights pattern found in
+// it (negative weights push URLs back). Higher scores are fetched first.
+final class BestFirstOrder implements FrontierOrder {
+    private record Weight(Pattern pattern, double weight) {}
+
+    private final List<Weight> weights = new ArrayList<>();
+
+    BestFirstOrder(Map<String, Double> urlWeights) {
+        if (urlWeights == null) return;
+        for (Map.Entry<String, Double> entry : urlWeights.entrySet()) {
+            if (entry.getValue() != null) {
+                weights.add(new Weight(Pattern.compile(entry.getKey()), entry.getValue()));
+            }
+        }
+    }
+
+    @Override
+    public double key(CrawlTask task, int inLinks) {
+        double score = inLinks;
+        for (Weight weight : weights) {
+            if (weight.pattern().matcher(task.url()).find()) {
+                score += weight.weight();
+            }
+        }
+        return -score;
+    }
+
+    @Override
+    public boolean usesInLinks() {
+        return true;
+    }
+}
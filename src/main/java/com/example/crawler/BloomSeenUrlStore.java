@@ -0,0 +1,154 @@
+package com.example.crawler;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Probabilistic seen-set: a scalable Bloom filter. When the current filter
+// reaches its capacity a larger one is added with a tighter error rate, so the
+// compound false-positive rate stays under the configured bound. A false
+// positive means a new URL is treated as already seen and skipped.
+class BloomSeenUrlStore implements SeenUrlStore {
+    private static final int GROWTH = 2;
+    private static final double TIGHTENING = 0.5;
+    private static final int STRIPES = 64;
+
+    private final CopyOnWriteArrayList<Filter> filters = new CopyOnWriteArrayList<>();
+    private final AtomicLong size = new AtomicLong();
+    private final long initialCapacity;
+    private final double falsePositiveRate;
+    // add is a check-then-set across several words; the same URL always hashes
+    // to the same stripe, so two threads adding it cannot both see it as new
+    private final Object[] stripes = new Object[STRIPES];
+
+    private static final class Filter {
+        final AtomicLongArray bits;
+        final long bitCount;
+        final int hashes;
+        final long capacity;
+        final AtomicLong count = new AtomicLong();
+
+        Filter(long capacity, double fpRate) {
+            this.capacity = capacity;
+            this.bitCount = optimalBits(capacity, fpRate);
+            this.hashes = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+            this.bits = new AtomicLongArray((int) ((bitCount + 63) >>> 6));
+        }
+
+        boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Returns true if at least one bit was newly set
+        boolean put(long h1, long h2) {
+            boolean changed = false;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long prev = bits.getAndUpdate(word, w -> w | mask);
+                changed |= (prev & mask) == 0;
+            }
+            if (changed) {
+                count.incrementAndGet();
+            }
+            return changed;
+        }
+    }
+
+    BloomSeenUrlStore(long expectedUrls, double falsePositiveRate) {
+        this.initialCapacity = Math.max(1024, expectedUrls);
+        this.falsePositiveRate = falsePositiveRate;
+        filters.add(new Filter(initialCapacity, falsePositiveRate * (1 - TIGHTENING)));
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    @Override
+    public boolean add(String url) {
+        long h1 = SeenUrlStore.fingerprint(url);
+        long h2 = secondHash(h1);
+        synchronized (stripes[(int) (h1 & (STRIPES - 1))]) {
+            for (Filter filter : filters) {
+                if (filter.mightContain(h1, h2)) {
+                    return false;
+                }
+            }
+
+            Filter current = currentFilter();
+            if (!current.put(h1, h2)) {
+                return false;
+            }
+            size.incrementAndGet();
+            return true;
+        }
+    }
+
+    @Override
+    public boolean contains(String url) {
+        long h1 = SeenUrlStore.fingerprint(url);
+        long h2 = secondHash(h1);
+        for (Filter filter : filters) {
+            if (filter.mightContain(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    @Override
+    public synchronized void clear() {
+        filters.clear();
+        filters.add(new Filter(initialCapacity, falsePositiveRate * (1 - TIGHTENING)));
+        size.set(0);
+    }
+
+    @Override
+    public MemoryReport memoryReport() {
+        long bytes = 0;
+        for (Filter filter : filters) {
+            bytes += (long) filter.bits.length() * Long.BYTES;
+        }
+        return new MemoryReport(MODE_BLOOM, size.get(), bytes);
+    }
+
+    private Filter currentFilter() {
+        Filter last = filters.get(filters.size() - 1);
+        if (last.count.get() < last.capacity) {
+            return last;
+        }
+        synchronized (this) {
+            last = filters.get(filters.size() - 1);
+            if (last.count.get() >= last.capacity) {
+                int generation = filters.size();
+                double fpRate = falsePositiveRate * (1 - TIGHTENING) * Math.pow(TIGHTENING, generation);
+                last = new Filter(last.capacity * GROWTH, fpRate);
+                filters.add(last);
+            }
+            return last;
+        }
+    }
+
+    private static long secondHash(long h1) {
+        long h = h1 * 0x9e3779b97f4a7c15L;
+        h ^= h >>> 31;
+        return h | 1;
+    }
+
+    static long optimalBits(long capacity, double fpRate) {
+        double bits = -capacity * Math.log(fpRate) / (Math.log(2) * Math.log(2));
+        return Math.max(64, (long) Math.ceil(bits));
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.crawler;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Membership and crawl state of a distributed crawl. Workers heartbeat every
+// ClusterWorker.HEARTBEAT_MS with a Report and get the current View back, so
+// the coordinator never has to reach a worker except to start a crawl. A
+// worker silent for MEMBER_TIMEOUT_MS is dropped; every join or departure
+// bumps the epoch, and workers rebalance their frontiers onto the new ring.
+//
+// The crawl is finished when, in two consecutive rounds of fresh reports, no
+// worker has tasks pending or links waiting to be acknowledged and the sums
+// of their monotonic counters have not moved. A forwarded batch is only
+// acknowledged once its receiver has queued it, so a link is always counted
+// somewhere; the second round rules out a link that moved between two
+// workers while their reports were taken.
+class ClusterCoordinator {
+    private static final Logger LOGGER = Logger.getLogger(ClusterCoordinator.class.getName());
+
+    static final String STATE_IDLE = "idle";
+    static final String STATE_RUNNING = "running";
+    static final String STATE_FINISHED = "finished";
+    static final String STATE_STOPPED = "stopped";
+    private static final long MEMBER_TIMEOUT_MS = 5 * ClusterWorker.HEARTBEAT_MS;
+
+    // What every worker needs to know: the ring and the crawl to run
+    record View(long epoch, List<ClusterMember> members, String crawlId, CrawlRequest request, String state) {}
+
+    // A worker's counters for the crawl it is running
+    record Report(
+            String id,
+            String url,
+            String crawlId,
+            long epoch,
+            long pending,      // tasks queued or running
+            long outbox,       // forwarded links not yet acknowledged
+            long enqueued,
+            long completed,
+            long sent,
+            long received
+    ) {}
+
+    record MemberStatus(ClusterMember member, long lastHeartbeat, Report report) {}
+
+    record ClusterStatus(long epoch, String crawlId, String state, long pages, List<MemberStatus> members) {}
+
+    private static final class MemberState {
+        final ClusterMember member;
+        long lastHeartbeat;
+        Report report;
+        boolean fresh;
+
+        MemberState(ClusterMember member) {
+            this.member = member;
+        }
+    }
+
+    private final Map<String, MemberState> members = new LinkedHashMap<>();
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+    private final ScheduledExecutorService ticker;
+    private long epoch = 0;
+    private HashRing ring = new HashRing(0, List.of());
+    private String crawlId = null;
+    private CrawlRequest request = null;
+    private String state = STATE_IDLE;
+    private long crawlCount = 0;
+    // Counter sum of the last all-idle round, or -1
+    private long idleSignature = -1;
+
+    ClusterCoordinator() {
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cluster-coordinator");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleWithFixedDelay(this::tick, ClusterWorker.HEARTBEAT_MS, ClusterWorker.HEARTBEAT_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    // A heartbeat from an unknown worker is its join
+    synchronized View heartbeat(Report report) {
+        MemberState member = members.get(report.id());
+        if (member == null || !member.member.url().equals(report.url())) {
+            member = new MemberState(new ClusterMember(report.id(), report.url()));
+            members.put(report.id(), member);
+            membershipChanged("joined: " + report.id() + " at " + report.url());
+        }
+        member.lastHeartbeat = System.currentTimeMillis();
+        member.report = report;
+        member.fresh = true;
+        return view();
+    }
+
+    synchronized View leave(String id) {
+        if (members.remove(id) != null) {
+            membershipChanged("left: " + id);
+        }
+        return view();
+    }
+
+    private void membershipChanged(String why) {
+        epoch++;
+        List<ClusterMember> current = new ArrayList<>();
+        for (MemberState member : members.values()) {
+            current.add(member.member);
+        }
+        current.sort(Comparator.comparing(ClusterMember::id));
+        ring = new HashRing(epoch, current);
+        idleSignature = -1;
+        System.out.println("Cluster epoch " + epoch + ", " + current.size() + " workers (" + why + ")");
+    }
+
+    private View view() {
+        return new View(epoch, ring.members(), crawlId, request, state);
+    }
+
+    // Starts a crawl across the current workers: they all get the new view
+    // first, so none rejects links for a crawl it has not heard of, then the
+    // seed goes to the worker that owns its host
+    View start(CrawlRequest req) throws IOException {
+        View view;
+        FrontierEntry seed;
+        ClusterMember owner;
+        synchronized (this) {
+            if (STATE_RUNNING.equals(state)) {
+                throw new IllegalStateException("A cluster crawl is already running");
+            }
+            String url = UrlPolicy.create(req).canonicalize(req.seedUrl());
+            if (url == null) {
+                throw new IllegalArgumentException("Invalid seed URL");
+            }
+            seed = new FrontierEntry(url, 0, "");
+            owner = ring.ownerOf(Frontier.hostOf(url));
+            if (owner == null) {
+                throw new IllegalStateException("No workers have joined the cluster");
+            }
+            crawlId = "crawl-" + System.currentTimeMillis() + "-" + (++crawlCount);
+            request = req;
+            state = STATE_RUNNING;
+            idleSignature = -1;
+            view = view();
+        }
+        for (ClusterMember member : view.members()) {
+            try {
+                post(member.url() + "/api/cluster/view", JsonUtil.toJson(view));
+            } catch (IOException e) {
+                // It picks the crawl up from its next heartbeat
+                LOGGER.log(Level.FINE, "Could not push view to " + member.id(), e);
+            }
+        }
+        try {
+            post(owner.url() + "/api/cluster/links",
+                    JsonUtil.toJson(new ClusterWorker.LinkBatch(view.crawlId(), "coordinator", List.of(seed))));
+        } catch (IOException e) {
+            stop();
+            throw e;
+        }
+        System.out.println("Started cluster crawl " + view.crawlId() + " of " + seed.url()
+                + ", seed owned by " + owner.id());
+        return view;
+    }
+
+    // Workers terminate their partitions on their next heartbeat
+    synchronized View stop() {
+        if (STATE_RUNNING.equals(state)) {
+            state = STATE_STOPPED;
+        }
+        return view();
+    }
+
+    synchronized ClusterStatus status() {
+        List<MemberStatus> statuses = new ArrayList<>();
+        long pages = 0;
+        for (MemberState member : members.values()) {
+            statuses.add(new MemberStatus(member.member, member.lastHeartbeat, member.report));
+            if (member.report != null && member.report.crawlId() != null
+                    && member.report.crawlId().equals(crawlId)) {
+                pages += member.report.completed();
+            }
+        }
+        return new ClusterStatus(epoch, crawlId, state, pages, statuses);
+    }
+
+    private synchronized void tick() {
+        long now = System.currentTimeMillis();
+        List<String> silent = new ArrayList<>();
+        for (MemberState member : members.values()) {
+            if (now - member.lastHeartbeat > MEMBER_TIMEOUT_MS) {
+                silent.add(member.member.id());
+            }
+        }
+        for (String id : silent) {
+            members.remove(id);
+            membershipChanged("no heartbeat from " + id);
+        }
+        if (STATE_RUNNING.equals(state)) {
+            checkFinished();
+        }
+    }
+
+    private void checkFinished() {
+        if (members.isEmpty()) return;
+        for (MemberState member : members.values()) {
+            if (!member.fresh) return;
+        }
+        long signature = epoch;
+        boolean idle = true;
+        for (MemberState member : members.values()) {
+            Report report = member.report;
+            member.fresh = false;
+            if (!crawlId.equals(report.crawlId()) || report.epoch() != epoch
+                    || report.pending() > 0 || report.outbox() > 0) {
+                idle = false;
+            }
+            signature = signature * 31 + report.enqueued() + report.sent() + report.received();
+        }
+        if (!idle) {
+            idleSignature = -1;
+        } else if (signature == idleSignature) {
+            state = STATE_FINISHED;
+            System.out.println("Cluster crawl " + crawlId + " finished");
+        } else {
+            idleSignature = signature;
+        }
+    }
+
+    private void post(String url, String json) throws IOException {
+        HttpRequest req = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        try {
+            HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
+            if (resp.statusCode() >= 300) {
+                throw new IOException(url + " answered " + resp.statusCode() + ": " + resp.body());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted posting to " + url, e);
+        }
+    }
+
+    void close() {
+        ticker.shutdownNow();
+    }
+}
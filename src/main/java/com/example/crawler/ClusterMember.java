@@ -0,0 +1,4 @@
+package com.example.crawler;
+
+// A worker node of a distributed crawl: a stable id and the base URL its API listens on
+public record ClusterMember(String id, String url) {}
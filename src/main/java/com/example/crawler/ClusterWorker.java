@@ -0,0 +1,409 @@
+package com.example.crawler;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// This node's side of a distributed crawl, see ClusterCoordinator. It
+// heartbeats the coordinator, runs its partition of the current crawl in the
+// "cluster" session and forwards links whose host another worker owns on the
+// hash ring. Forwarded links are buffered per destination and posted as
+// batches of up to BATCH_SIZE every FORWARD_INTERVAL_MS, so a page full of
+// cross-host links costs one request per destination rather than one per link.
+// Each worker keeps the seen-set and politeness state of its own hosts only;
+// when hosts move, the URLs already fetched from them follow as SEEN_ONLY
+// entries so their new owner does not fetch them again. That hand-off scans
+// every URL fetched so far, which on a large crawl takes longer than the
+// coordinator waits for a heartbeat, so it runs on its own thread.
+class ClusterWorker {
+    private static final Logger LOGGER = Logger.getLogger(ClusterWorker.class.getName());
+
+    static final String SESSION_ID = "cluster";
+    static final long HEARTBEAT_MS = 1000;
+    private static final int BATCH_SIZE = 1000;
+    private static final long FORWARD_INTERVAL_MS = 50;
+    private static final long LEAVE_TIMEOUT_MS = 30_000;
+    // Depth of a forwarded entry that only marks its URL seen
+    static final int SEEN_ONLY = -1;
+
+    record LinkBatch(String crawlId, String from, List<FrontierEntry> links) {}
+
+    private final ClusterMember self;
+    private final String coordinatorUrl;
+    private final CrawlerService session;
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+    // Pending links per destination member id, guarded by itself
+    private final Map<String, ArrayDeque<FrontierEntry>> outbox = new HashMap<>();
+    // Links queued or posted but not yet acknowledged by their owner
+    private final AtomicLong unacknowledged = new AtomicLong();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private volatile HashRing ring = null;
+    private volatile String crawlId = null;
+    private volatile boolean crawlEnded = false;
+    private volatile boolean closed = false;
+    private volatile boolean leaving = false;
+    // Set when the ring changed and the hand-off has not run yet, guarded by rebalanceLock
+    private final Object rebalanceLock = new Object();
+    private boolean rebalancePending = false;
+    private Thread heartbeat;
+    private Thread forwarder;
+    private Thread rebalancer;
+
+    ClusterWorker(ClusterMember self, String coordinatorUrl, CrawlerService session) {
+        this.self = self;
+        this.coordinatorUrl = coordinatorUrl;
+        this.session = session;
+    }
+
+    // Joins the cluster; call once this node's API is accepting requests
+    void start() {
+        forwarder = new Thread(this::forwardLoop, "cluster-forwarder");
+        forwarder.setDaemon(true);
+        forwarder.start();
+        rebalancer = new Thread(this::rebalanceLoop, "cluster-rebalancer");
+        rebalancer.setDaemon(true);
+        rebalancer.start();
+        heartbeat = new Thread(this::heartbeatLoop, "cluster-heartbeat");
+        heartbeat.setDaemon(true);
+        heartbeat.start();
+    }
+
+    ClusterMember self() {
+        return self;
+    }
+
+    // Queues the link for the worker owning its host; false when that is this node
+    boolean forwardIfRemote(String url, int depth, String referrer) {
+        HashRing current = ring;
+        if (current == null) return false;
+        ClusterMember owner = current.ownerOf(Frontier.hostOf(url));
+        if (owner == null || owner.id().equals(self.id())) return false;
+        FrontierEntry entry = new FrontierEntry(url, depth, referrer);
+        synchronized (outbox) {
+            ArrayDeque<FrontierEntry> queue = outbox.computeIfAbsent(owner.id(), id -> new ArrayDeque<>());
+            queue.add(entry);
+            unacknowledged.incrementAndGet();
+            if (queue.size() >= BATCH_SIZE) {
+                outbox.notifyAll();
+            }
+        }
+        return true;
+    }
+
+    // A batch posted by another worker; false if it is for a crawl this node is not running
+    boolean receive(LinkBatch batch) {
+        String current = crawlId;
+        if (batch.crawlId() == null || !batch.crawlId().equals(current) || crawlEnded) {
+            return false;
+        }
+        session.acceptForwarded(batch.links());
+        received.add(batch.links().size());
+        return true;
+    }
+
+    synchronized void applyView(ClusterCoordinator.View view) {
+        HashRing current = ring;
+        if (current == null || current.epoch() != view.epoch()) {
+            ring = new HashRing(view.epoch(), view.members());
+            if (crawlId != null && !crawlEnded) {
+                synchronized (rebalanceLock) {
+                    rebalancePending = true;
+                    rebalanceLock.notifyAll();
+                }
+            }
+        }
+        String viewCrawl = view.crawlId();
+        if (viewCrawl == null) return;
+        if (!viewCrawl.equals(crawlId)) {
+            if (ClusterCoordinator.STATE_RUNNING.equals(view.state()) && view.request() != null) {
+                clearOutbox();
+                crawlId = viewCrawl;
+                crawlEnded = false;
+                session.startPartition(view.request(), this);
+                System.out.println("Joined cluster crawl " + viewCrawl + " of " + view.request().seedUrl()
+                        + " as " + self.id() + " (" + view.members().size() + " workers)");
+            }
+        } else if (!crawlEnded && ClusterCoordinator.STATE_FINISHED.equals(view.state())) {
+            crawlEnded = true;
+            session.finishPartition();
+        } else if (!crawlEnded && ClusterCoordinator.STATE_STOPPED.equals(view.state())) {
+            crawlEnded = true;
+            session.terminateCrawl();
+            clearOutbox();
+        }
+    }
+
+    // Ring changes that arrive during a pass are folded into one more pass
+    // against the newest ring
+    private void rebalanceLoop() {
+        while (!closed) {
+            synchronized (rebalanceLock) {
+                try {
+                    while (!rebalancePending) {
+                        rebalanceLock.wait();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                rebalancePending = false;
+            }
+            if (crawlId == null || crawlEnded) continue;
+            try {
+                rebalance();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Rebalance failed", e);
+            }
+        }
+    }
+
+    // Queued tasks of hosts that moved to another worker follow them, and so
+    // do the URLs fetched from those hosts; spilled tasks are forwarded when
+    // they come up for dispatch (see CrawlTask.run)
+    private void rebalance() {
+        HashRing current = ring;
+        int moved = session.drainForeignHosts(host -> {
+            ClusterMember owner = current.ownerOf(host);
+            return owner != null && !owner.id().equals(self.id());
+        }, entry -> forwardIfRemote(entry.url(), entry.depth(), entry.referrer()));
+        int seen = handOffSeen();
+        if (moved > 0 || seen > 0) {
+            System.out.println("Rebalanced " + moved + " queued tasks and " + seen
+                    + " fetched URLs to other workers (epoch " + current.epoch() + ")");
+        }
+    }
+
+    // Every URL this node fetched whose host is now owned elsewhere
+    private int handOffSeen() {
+        int[] count = {0};
+        session.forEachCrawledUrl(url -> {
+            if (forwardIfRemote(url, SEEN_ONLY, "")) count[0]++;
+        });
+        return count[0];
+    }
+
+    ClusterCoordinator.Report report() {
+        HashRing current = ring;
+        CrawlProgress progress = session.progress();
+        return new ClusterCoordinator.Report(self.id(), self.url(), crawlId, current != null ? current.epoch() : -1,
+                session.pendingTasks(), unacknowledged.get(), progress.enqueued(), progress.completed(),
+                sent.sum(), received.sum());
+    }
+
+    private void heartbeatLoop() {
+        boolean reachable = true;
+        while (!closed && !leaving) {
+            try {
+                String body = post(coordinatorUrl + "/api/cluster/heartbeat", JsonUtil.toJson(report()));
+                if (!leaving) {
+                    applyView(JsonUtil.fromJson(body, ClusterCoordinator.View.class));
+                }
+                reachable = true;
+            } catch (IOException | RuntimeException e) {
+                if (reachable) {
+                    LOGGER.log(Level.WARNING, "Cluster coordinator " + coordinatorUrl + " unreachable: " + e.getMessage());
+                }
+                reachable = false;
+            }
+            try {
+                Thread.sleep(HEARTBEAT_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void forwardLoop() {
+        while (!closed) {
+            synchronized (outbox) {
+                try {
+                    outbox.wait(FORWARD_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            flushOutbox();
+        }
+    }
+
+    // Posts one batch to every destination with links waiting, in parallel.
+    // A failed batch goes back to the front of its queue for the next round;
+    // a destination that has left the ring has its links routed again.
+    private void flushOutbox() {
+        Map<String, List<FrontierEntry>> batches = new HashMap<>();
+        synchronized (outbox) {
+            Iterator<Map.Entry<String, ArrayDeque<FrontierEntry>>> it = outbox.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, ArrayDeque<FrontierEntry>> entry = it.next();
+                ArrayDeque<FrontierEntry> queue = entry.getValue();
+                List<FrontierEntry> batch = new ArrayList<>(Math.min(queue.size(), BATCH_SIZE));
+                while (batch.size() < BATCH_SIZE && !queue.isEmpty()) {
+                    batch.add(queue.poll());
+                }
+                if (queue.isEmpty()) {
+                    it.remove();
+                }
+                batches.put(entry.getKey(), batch);
+            }
+        }
+        if (batches.isEmpty()) return;
+
+        HashRing current = ring;
+        String crawl = crawlId;
+        List<CompletableFuture<Void>> posts = new ArrayList<>();
+        for (Map.Entry<String, List<FrontierEntry>> entry : batches.entrySet()) {
+            String destination = entry.getKey();
+            List<FrontierEntry> links = entry.getValue();
+            ClusterMember member = current != null ? current.member(destination) : null;
+            if (member == null) {
+                reroute(links);
+                continue;
+            }
+            HttpRequest req = HttpRequest.newBuilder(URI.create(member.url() + "/api/cluster/links"))
+                    .timeout(Duration.ofSeconds(10))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            JsonUtil.toJson(new LinkBatch(crawl, self.id(), links))))
+                    .build();
+            posts.add(http.sendAsync(req, HttpResponse.BodyHandlers.discarding()).handle((resp, error) -> {
+                if (error == null && resp.statusCode() < 300) {
+                    sent.add(links.size());
+                    unacknowledged.addAndGet(-links.size());
+                } else if (error == null && resp.statusCode() == 409
+                        && (crawlEnded || !Objects.equals(crawl, crawlId))) {
+                    // Links of a crawl that has ended or this node has moved on from
+                    unacknowledged.addAndGet(-links.size());
+                } else {
+                    requeue(destination, links);
+                }
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(posts.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    private void requeue(String destination, List<FrontierEntry> links) {
+        synchronized (outbox) {
+            ArrayDeque<FrontierEntry> queue = outbox.computeIfAbsent(destination, id -> new ArrayDeque<>());
+            for (int i = links.size() - 1; i >= 0; i--) {
+                queue.addFirst(links.get(i));
+            }
+        }
+    }
+
+    // Each link is counted again (forwarded or queued here) before it stops
+    // counting as unacknowledged, so it is never invisible to the coordinator
+    private void reroute(List<FrontierEntry> links) {
+        List<FrontierEntry> local = new ArrayList<>();
+        for (FrontierEntry link : links) {
+            if (!forwardIfRemote(link.url(), link.depth(), link.referrer())) {
+                local.add(link);
+            }
+        }
+        if (!local.isEmpty() && crawlId != null && !crawlEnded) {
+            session.acceptForwarded(local);
+        }
+        unacknowledged.addAndGet(-links.size());
+    }
+
+    private void clearOutbox() {
+        synchronized (outbox) {
+            long dropped = 0;
+            for (ArrayDeque<FrontierEntry> queue : outbox.values()) {
+                dropped += queue.size();
+            }
+            outbox.clear();
+            unacknowledged.addAndGet(-dropped);
+        }
+    }
+
+    // Graceful departure: the coordinator drops this node from the ring, the
+    // running fetches finish, and every queued entry is forwarded to its new
+    // owner before the node goes away. A node that dies instead loses its
+    // queued entries; links found later for its hosts go to their new owners.
+    void leave() {
+        leaving = true;
+        // A heartbeat still in flight after the leave would join the node again
+        if (heartbeat != null) {
+            try {
+                heartbeat.join(HEARTBEAT_MS + 10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            String body = post(coordinatorUrl + "/api/cluster/leave", JsonUtil.toJson(self));
+            applyView(JsonUtil.fromJson(body, ClusterCoordinator.View.class));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not leave the cluster cleanly", e);
+            close();
+            return;
+        }
+        if (crawlId != null && !crawlEnded) {
+            session.handOffPartition(entry -> forwardIfRemote(entry.url(), entry.depth(), entry.referrer()));
+            crawlEnded = true;
+        }
+        long deadline = System.currentTimeMillis() + LEAVE_TIMEOUT_MS;
+        while (unacknowledged.get() > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(FORWARD_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (unacknowledged.get() > 0) {
+            LOGGER.warning("Left the cluster with " + unacknowledged.get() + " links not handed off");
+        }
+        close();
+    }
+
+    void close() {
+        closed = true;
+        if (heartbeat != null) {
+            heartbeat.interrupt();
+        }
+        if (forwarder != null) {
+            forwarder.interrupt();
+        }
+        if (rebalancer != null) {
+            rebalancer.interrupt();
+        }
+    }
+
+    private String post(String url, String json) throws IOException {
+        HttpRequest req = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        try {
+            HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
+            if (resp.statusCode() >= 300) {
+                throw new IOException(url + " answered " + resp.statusCode());
+            }
+            return resp.body();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted posting to " + url, e);
+        }
+    }
+}
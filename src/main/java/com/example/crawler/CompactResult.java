@@ -0,0 +1,190 @@
+package com.example.crawler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// A CrawlResult as ResultBuffer keeps it: the strings packed into one UTF-8
+// byte array with the URL's origin and the content type replaced by
+// dictionary ids, and the referrer pointing at the packed data of the
+// referrer's own result when that is still known, so a page's URL is held
+// once however many of its links were fetched. Only the Codec that wrote a
+// result can read it back.
+record CompactResult(
+        byte[] data,      // origin, path, content type, title
+        byte[] referrer,  // origin and path; NO_REFERRER for "", null for none
+        int statusCode,
+        long contentSize,
+        long loadTime,
+        long timestamp
+) {
+    static final byte[] NO_REFERRER = new byte[0];
+
+    // Encodes and decodes results against dictionaries of origins and content
+    // types. Not thread-safe; ResultBuffer uses it under its own lock.
+    static final class Codec {
+        private static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+        private final Dictionary origins = new Dictionary();
+        private final Dictionary contentTypes = new Dictionary();
+        private byte[] buffer = new byte[256];
+        private int length;
+
+        CompactResult encode(CrawlResult result, byte[] referrer) {
+            length = 0;
+            writeUrl(result.url());
+            writeRef(contentTypes, result.contentType());
+            writeString(result.title());
+            return new CompactResult(Arrays.copyOf(buffer, length), referrer, result.statusCode(),
+                    result.contentSize(), result.loadTime(), result.timestamp());
+        }
+
+        // A referrer whose own result is unknown, packed on its own
+        byte[] encodeUrl(String url) {
+            if (url == null) return null;
+            if (url.isEmpty()) return NO_REFERRER;
+            length = 0;
+            writeUrl(url);
+            return Arrays.copyOf(buffer, length);
+        }
+
+        CrawlResult decode(CompactResult compact) {
+            Reader in = new Reader(compact.data);
+            String url = readUrl(in);
+            String contentType = readRef(in, contentTypes);
+            String title = readString(in);
+            return new CrawlResult(url, compact.statusCode, compact.contentSize, decodeUrl(compact.referrer),
+                    contentType, title, compact.loadTime, compact.timestamp);
+        }
+
+        // The URL at the start of a result's data or a packed referrer
+        String decodeUrl(byte[] packed) {
+            if (packed == null) return null;
+            if (packed.length == 0) return "";
+            return readUrl(new Reader(packed));
+        }
+
+        void clear() {
+            origins.clear();
+            contentTypes.clear();
+        }
+
+        private void writeUrl(String url) {
+            int split = originEnd(url);
+            writeRef(origins, url.substring(0, split));
+            writeString(url.substring(split));
+        }
+
+        private String readUrl(Reader in) {
+            return readRef(in, origins) + readString(in);
+        }
+
+        // Scheme and authority, e.g. "https://example.com:8080"
+        private static int originEnd(String url) {
+            int start = url.indexOf("://");
+            if (start < 0) return 0;
+            for (int i = start + 3; i < url.length(); i++) {
+                char c = url.charAt(i);
+                if (c == '/' || c == '?' || c == '#') return i;
+            }
+            return url.length();
+        }
+
+        // id + 1 of a dictionary entry, or 0 and the string itself once the dictionary is full
+        private void writeRef(Dictionary dictionary, String value) {
+            int id = value == null ? -1 : dictionary.idOf(value);
+            if (id >= 0) {
+                writeVarInt(id + 1);
+            } else {
+                writeVarInt(0);
+                writeString(value);
+            }
+        }
+
+        private String readRef(Reader in, Dictionary dictionary) {
+            int ref = in.readVarInt();
+            return ref > 0 ? dictionary.valueOf(ref - 1) : readString(in);
+        }
+
+        // Byte length + 1 then UTF-8, or 0 for null
+        private void writeString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length + 1);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+
+        private String readString(Reader in) {
+            int size = in.readVarInt();
+            if (size == 0) return null;
+            String value = new String(in.data, in.pos, size - 1, StandardCharsets.UTF_8);
+            in.pos += size - 1;
+            return value;
+        }
+
+        private void writeVarInt(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
+        }
+
+        private static final class Reader {
+            final byte[] data;
+            int pos;
+
+            Reader(byte[] data) {
+                this.data = data;
+            }
+
+            int readVarInt() {
+                int value = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = data[pos++];
+                    value |= (b & 0x7F) << shift;
+                    if (b >= 0) return value;
+                }
+            }
+        }
+
+        private static final class Dictionary {
+            private final List<String> values = new ArrayList<>();
+            private final Map<String, Integer> ids = new HashMap<>();
+
+            // -1 once the dictionary is full and the value is new
+            int idOf(String value) {
+                Integer id = ids.get(value);
+                if (id != null) return id;
+                if (values.size() >= MAX_DICTIONARY_SIZE) return -1;
+                values.add(value);
+                ids.put(value, values.size() - 1);
+                return values.size() - 1;
+            }
+
+            String valueOf(int id) {
+                return values.get(id);
+            }
+
+            void clear() {
+                values.clear();
+                ids.clear();
+            }
+        }
+    }
+}
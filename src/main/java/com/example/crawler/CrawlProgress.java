@@ -0,0 +1,56 @@
+package com.example.crawler;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Task accounting for one crawl, safe to update from any number of workers
+// without locks. The totals shown in the UI are striped adders; whether the
+// crawl is done is decided by a single count of outstanding tasks. A task
+// enqueues its children before it completes itself, so that count can only
+// reach zero once, when no task is queued or running anywhere.
+final class CrawlProgress {
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final AtomicLong outstanding = new AtomicLong();
+    private final Runnable onFinished;
+
+    CrawlProgress(Runnable onFinished) {
+        this(0, 0, onFinished);
+    }
+
+    // Continues the counts of a crawl restored from a checkpoint
+    CrawlProgress(long enqueued, long completed, Runnable onFinished) {
+        this.enqueued.add(enqueued);
+        this.completed.add(completed);
+        this.outstanding.set(Math.max(0, enqueued - completed));
+        this.onFinished = onFinished;
+    }
+
+    void taskEnqueued() {
+        outstanding.incrementAndGet();
+        enqueued.increment();
+    }
+
+    void taskCompleted() {
+        completed.increment();
+        if (outstanding.decrementAndGet() == 0) {
+            onFinished.run();
+        }
+    }
+
+    long enqueued() {
+        return enqueued.sum();
+    }
+
+    long completed() {
+        return completed.sum();
+    }
+
+    long outstanding() {
+        return outstanding.get();
+    }
+
+    boolean isFinished() {
+        return outstanding.get() == 0;
+    }
+}
@@ -1,5 +1,8 @@
 package com.example.crawler;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public record CrawlRequest(
         String seedUrl,
         int maxDepth,
@@ -7,8 +10,31 @@ public record CrawlRequest(
         int delay,           // Delay between requests in milliseconds
         String userAgent,    // Custom user agent
         String filter,       // URL regex filter
-        int timeout          // Connection timeout in milliseconds
+        int timeout,         // Connection timeout in milliseconds
+        String executionMode, // "platform" (fixed pool of `threads`) or "virtual"
+        int maxInFlight,     // Max concurrent fetches in virtual mode
+        String seenStore,    // "exact" (URL fingerprints) or "bloom" (probabilistic)
+        double falsePositiveRate, // Target false-positive rate in bloom mode
+        long expectedUrls,   // Initial sizing hint for the seen-URL store
+        String extractionMode, // "dom" (full Jsoup parse) or "stream" (single-pass scanner)
+        int frontierMemoryLimit, // Queued tasks kept on the heap before the frontier spills to disk
+        String fetcher,      // "jsoup" (connection per request) or "httpclient" (pooled, HTTP/2)
+        int maxConnectionsPerHost, // Ceiling on concurrent requests to one host
+        String hostControl,  // "adaptive" (per-host AIMD concurrency and timeouts) or "fixed"
+        boolean stripTrackingParams, // Drop utm_* and similar query parameters from discovered URLs
+        boolean ignoreRobots, // Fetch pages robots.txt disallows and skip its Crawl-delay
+        boolean seedSitemaps, // Also seed the crawl from the seed host's sitemaps
+        boolean revisit,     // Conditional GETs with saved validators; unchanged pages are not re-parsed
+        boolean archive,     // Keep the raw body of every fetched page in the page archive
+        String frontierOrder, // "fifo", "bfs" (shallowest first) or "best-first" (see BestFirstOrder)
+        Map<String, Double> urlWeights, // Best-first: score added to URLs a regex is found in
+        int maxPagesPerHost  // Pages queued per host at most; 0 for no cap
 ) {
+    public static final String MODE_PLATFORM = "platform";
+    public static final String MODE_VIRTUAL = "virtual";
+    public static final String EXTRACT_DOM = "dom";
+    public static final String EXTRACT_STREAM = "stream";
+
     public CrawlRequest {
         if (userAgent == null || userAgent.isBlank()) {
             userAgent = "MultiCrawlerBot/1.0";
@@ -16,5 +42,74 @@ public record CrawlRequest(
         if (timeout <= 0) {
             timeout = 10000;
         }
+        executionMode = MODE_VIRTUAL.equalsIgnoreCase(executionMode) ? MODE_VIRTUAL : MODE_PLATFORM;
+        if (maxInFlight <= 0) {
+            maxInFlight = 256;
+        }
+        seenStore = SeenUrlStore.MODE_BLOOM.equalsIgnoreCase(seenStore)
+                ? SeenUrlStore.MODE_BLOOM
+                : SeenUrlStore.MODE_EXACT;
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            falsePositiveRate = 0.001;
+        }
+        if (expectedUrls <= 0) {
+            expectedUrls = 100_000;
+        }
+        extractionMode = EXTRACT_STREAM.equalsIgnoreCase(extractionMode) ? EXTRACT_STREAM : EXTRACT_DOM;
+        if (frontierMemoryLimit <= 0) {
+            frontierMemoryLimit = 100_000;
+        }
+        fetcher = Fetcher.BACKEND_HTTPCLIENT.equalsIgnoreCase(fetcher)
+                ? Fetcher.BACKEND_HTTPCLIENT
+                : Fetcher.BACKEND_JSOUP;
+        if (maxConnectionsPerHost <= 0) {
+            maxConnectionsPerHost = 8;
+        }
+        hostControl = HostController.MODE_FIXED.equalsIgnoreCase(hostControl)
+                ? HostController.MODE_FIXED
+                : HostController.MODE_ADAPTIVE;
+        if (FrontierOrder.MODE_BFS.equalsIgnoreCase(frontierOrder)) {
+            frontierOrder = FrontierOrder.MODE_BFS;
+        } else if (FrontierOrder.MODE_BEST_FIRST.equalsIgnoreCase(frontierOrder)) {
+            frontierOrder = FrontierOrder.MODE_BEST_FIRST;
+        } else {
+            frontierOrder = FrontierOrder.MODE_FIFO;
+        }
+        urlWeights = urlWeights == null ? Map.of() : withoutNulls(urlWeights);
+        if (maxPagesPerHost < 0) {
+            maxPagesPerHost = 0;
+        }
+    }
+
+    public CrawlRequest(String seedUrl, int maxDepth, int threads, int delay,
+                        String userAgent, String filter, int timeout) {
+        this(seedUrl, maxDepth, threads, delay, userAgent, filter, timeout, MODE_PLATFORM, 0,
+                SeenUrlStore.MODE_EXACT, 0, 0, EXTRACT_DOM, 0,
+                Fetcher.BACKEND_JSOUP, 0, HostController.MODE_ADAPTIVE, false, false, false, false, false,
+                FrontierOrder.MODE_FIFO, Map.of(), 0);
+    }
+
+    // A weight given as JSON null adds nothing, the same as leaving it out;
+    // Map.copyOf would reject it with an NPE
+    private static Map<String, Double> withoutNulls(Map<String, Double> weights) {
+        Map<String, Double> kept = new HashMap<>(weights.size() * 2);
+        weights.forEach((pattern, weight) -> {
+            if (pattern != null && weight != null) {
+                kept.put(pattern, weight);
+            }
+        });
+        return Map.copyOf(kept);
+    }
+
+    public boolean isVirtual() {
+        return MODE_VIRTUAL.equals(executionMode);
+    }
+
+    public boolean isStreamExtraction() {
+        return EXTRACT_STREAM.equals(extractionMode);
+    }
+
+    public boolean isAdaptiveHostControl() {
+        return HostController.MODE_ADAPTIVE.equals(hostControl);
     }
 }
\ No newline at end of file
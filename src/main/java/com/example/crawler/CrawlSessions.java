@@ -0,0 +1,148 @@
+package com.example.crawler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Independent crawls in one process, addressed by id. Each session is a
+// CrawlerService with its own frontier, seen-set, counters and result ring;
+// all of them write to one database (rows tagged with the session id), share
+// the robots.txt cache and draw fetch permits from one fair semaphore, so the
+// process-wide number of concurrent fetches stays at fetchBudget however many
+// sessions run. The "default" session backs the original single-crawl API and
+// keeps its frontier in the original directory; the others get a directory
+// each under sessionsDir, from which paused sessions are restored on startup.
+class CrawlSessions {
+    private static final Logger LOGGER = Logger.getLogger(CrawlSessions.class.getName());
+
+    static final String DEFAULT_SESSION = "default";
+    static final int DEFAULT_FETCH_BUDGET = 512;
+    private static final Pattern SESSION_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final DatabaseManager db;
+    private final Path sessionsDir;
+    private final RobotsCache robots = new RobotsCache();
+    private final PageArchive archive = new PageArchive(PageArchive.defaultDirectory());
+    private final int fetchBudget;
+    private final Semaphore fetchPermits;
+    private final ConcurrentHashMap<String, CrawlerService> sessions = new ConcurrentHashMap<>();
+
+    record SessionSummary(String id, Status status) {}
+
+    CrawlSessions(DatabaseManager db, Path defaultFrontierDir, Path sessionsDir, int fetchBudget) {
+        this.db = db;
+        this.sessionsDir = sessionsDir;
+        this.fetchBudget = Math.max(1, fetchBudget);
+        this.fetchPermits = new Semaphore(this.fetchBudget, true);
+        sessions.put(DEFAULT_SESSION, newSession(DEFAULT_SESSION, defaultFrontierDir));
+        restoreSessions();
+    }
+
+    private CrawlerService newSession(String id, Path frontierDir) {
+        return new CrawlerService(id, frontierDir, db, robots, archive, fetchPermits);
+    }
+
+    // Sessions that were paused (or running) when the previous process exited
+    private void restoreSessions() {
+        if (!Files.isDirectory(sessionsDir)) return;
+        try (Stream<Path> dirs = Files.list(sessionsDir)) {
+            for (Path dir : (Iterable<Path>) dirs::iterator) {
+                String id = dir.getFileName().toString();
+                if (!Files.isDirectory(dir) || !isValidId(id) || id.equals(DEFAULT_SESSION)) continue;
+                CrawlerService session = newSession(id, dir);
+                if (session.isActiveSession()) {
+                    sessions.put(id, session);
+                } else {
+                    session.close();
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to restore crawl sessions from " + sessionsDir, e);
+        }
+    }
+
+    static boolean isValidId(String id) {
+        return id != null && SESSION_ID.matcher(id).matches();
+    }
+
+    CrawlerService defaultSession() {
+        return sessions.get(DEFAULT_SESSION);
+    }
+
+    // Null if there is no such session
+    CrawlerService get(String id) {
+        return id != null ? sessions.get(id) : null;
+    }
+
+    CrawlerService getOrCreate(String id) {
+        if (!isValidId(id)) {
+            throw new IllegalArgumentException("Session id must be 1-64 letters, digits, '-' or '_'");
+        }
+        return sessions.computeIfAbsent(id, key -> newSession(key, sessionsDir.resolve(key)));
+    }
+
+    // Terminates the session and forgets it; its results stay in the database
+    boolean remove(String id) {
+        if (DEFAULT_SESSION.equals(id)) {
+            throw new IllegalArgumentException("The default session cannot be removed");
+        }
+        CrawlerService session = sessions.remove(id);
+        if (session == null) return false;
+        session.terminateCrawl();
+        session.close();
+        try {
+            Files.deleteIfExists(sessionsDir.resolve(id));
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not delete frontier directory of session " + id, e);
+        }
+        return true;
+    }
+
+    List<CrawlerService> all() {
+        List<CrawlerService> all = new ArrayList<>(sessions.values());
+        all.sort(Comparator.comparing(CrawlerService::getSessionId));
+        return all;
+    }
+
+    List<SessionSummary> summaries() {
+        List<SessionSummary> summaries = new ArrayList<>();
+        for (CrawlerService session : all()) {
+            summaries.add(new SessionSummary(session.getSessionId(), session.getStatus()));
+        }
+        return summaries;
+    }
+
+    int fetchBudget() {
+        return fetchBudget;
+    }
+
+    int availableFetchPermits() {
+        return fetchPermits.availablePermits();
+    }
+
+    DatabaseManager db() {
+        return db;
+    }
+
+    PageArchive archive() {
+        return archive;
+    }
+
+    // Checkpoints every session, then closes the shared archive and database
+    void shutdown() {
+        for (CrawlerService session : all()) {
+            session.close();
+        }
+        archive.close();
+        db.close();
+    }
+}
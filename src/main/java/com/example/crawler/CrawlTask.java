@@ -1,215 +1,293 @@
 package com.example.crawler;
 
-import org.jsoup.Connection;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import org.jsoup.select.Elements;
+import org.jsoup.nodes.Element;
 
-import java.net.URI;
-import java.net.URISyntaxException;
+import java.io.ByteArrayInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Pattern;
+import java.util.Set;
 
 public class CrawlTask implements Runnable {
-    private static final Map<String, VisitInfo> VISITED_INFO = new ConcurrentHashMap<>();
+    // Attempts per URL when the host answers 429/503
+    private static final int MAX_ATTEMPTS = 4;
+
     private final String url;
     private final int depth;
-    private final int maxDepth;
-    private final CrawlerService service;
-    private final DatabaseManager db;
     private final String referrer;
-    private final Pattern urlFilter;
-    private final int delay;
-    private final String userAgent;
-    private final int timeout;
-
-    static class VisitInfo {
-        int count;
-        long lastVisitTimestamp;
-
-        VisitInfo(int count, long timestamp) {
-            this.count = count;
-            this.lastVisitTimestamp = timestamp;
-        }
+    private final UrlPolicy policy;
+    private final CrawlerService service;
+    private final int attempt;
+
+    public CrawlTask(String url, int depth, String referrer, CrawlerService service) {
+        this(url, depth, referrer, service.policy(), service, 1);
     }
 
-    public CrawlTask(
-            String url,
-            int depth,
-            int maxDepth,
-            CrawlerService service,
-            DatabaseManager db,
-            String referrer,
-            String urlFilterPattern,
-            int delay,
-            String userAgent,
-            int timeout
-    ) {
+    private CrawlTask(String url, int depth, String referrer, UrlPolicy policy, CrawlerService service, int attempt) {
         this.url = url;
         this.depth = depth;
-        this.maxDepth = maxDepth;
-        this.service = service;
-        this.db = db;
         this.referrer = referrer;
-        this.urlFilter = urlFilterPattern != null && !urlFilterPattern.isEmpty()
-                ? Pattern.compile(urlFilterPattern)
-                : null;
-        this.delay = delay;
-        this.userAgent = userAgent;
-        this.timeout = timeout;
+        this.policy = policy;
+        this.service = service;
+        this.attempt = attempt;
     }
 
-    public CrawlTask(String url, int depth, int maxDepth, CrawlerService service, DatabaseManager db) {
-        this(url, depth, maxDepth, service, db, "", null, 0, "MultiCrawlerBot/1.0", 10000);
+    String url() {
+        return url;
     }
 
-    @Override
-    public void run() {
-        if (delay > 0) {
-            try {
-                Thread.sleep(delay);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                return;
-            }
-        }
-
-        long currentTime = Instant.now().toEpochMilli();
-        VisitInfo visitInfo = VISITED_INFO.compute(url, (k, v) -> {
-            if (v == null) {
-                return new VisitInfo(1, currentTime);
-            } else {
-                v.count++;
-                v.lastVisitTimestamp = currentTime;
-                return v;
-            }
-        });
+    int depth() {
+        return depth;
+    }
 
-        boolean isRevisit = visitInfo.count > 1;
+    // A retry is the same page again, not a new one for its host's page cap
+    boolean isRetry() {
+        return attempt > 1;
+    }
 
-        if (isRevisit && service.isActiveSession()) {
-            CrawlResult revisitResult = new CrawlResult(
-                    url,
-                    304, // appropriate status for revisits
-                    0,
-                    referrer,
-                    "text/html",
-                    "REVISIT: Previously crawled " + formatTimeDifference(currentTime - visitInfo.lastVisitTimestamp) + " ago",
-                    0,
-                    currentTime
-            );
-            service.addResult(revisitResult);
-            service.taskCompleted();
-            return;
-        }
+    FrontierEntry toEntry() {
+        return new FrontierEntry(url, depth, referrer);
+    }
 
-        try {
-            long startTime = System.currentTimeMillis();
-            Connection connection = Jsoup.connect(url)
-                    .ignoreContentType(true)
-                    .userAgent(userAgent)
-                    .timeout(timeout)
-                    .followRedirects(true)
-                    .maxBodySize(10_000_000); // 10MB max
+    // Politeness delays are applied by the frontier before the task is dispatched;
+    // the dispatcher records completion once run() returns
+    @Override
+    public void run() {
+        // Queued before a cluster membership change moved its host elsewhere
+        if (service.forwardIfRemote(url, depth, referrer)) return;
+        HostController hosts = service.hostController();
+        String host = Frontier.hostOf(url);
+        if (!robotsAllow(hosts, host)) return;
 
-            Connection.Response resp = connection.execute();
+        long startTime = System.currentTimeMillis();
+        boolean revisit = service.isRevisit();
+        DatabaseManager.PageValidators previous = revisit ? service.db().findValidators(url) : null;
+        long stageStart = System.nanoTime();
+        try (FetchResponse resp = service.fetcher().fetch(url, hosts.timeoutFor(host), conditionalHeaders(previous))) {
+            stageStart = Metrics.TTFB.recordSince(stageStart);
             int status = resp.statusCode();
-            byte[] body = resp.bodyAsBytes();
-            long loadTime = System.currentTimeMillis() - startTime;
+            if (status == 429 || status == 503) {
+                hosts.recordThrottle(host, System.currentTimeMillis() - startTime, resp.header("Retry-After"));
+                if (attempt < MAX_ATTEMPTS) {
+                    // The frontier holds the host back until the backoff has passed
+                    service.enqueueTask(retry());
+                    return;
+                }
+            }
             String contentType = resp.contentType();
+            boolean isHtml = status < 400 && contentType != null && contentType.startsWith("text/html");
+            boolean followLinks = policy.followsLinksFrom(depth);
+            long contentSize;
+            long loadTime;
             String title = null;
+            String contentHash = null;
+            byte[] archived = null;
+            DatabaseManager.PageValidators validators = null;
 
-            if (contentType != null && contentType.startsWith("text/html")) {
-                Document doc = resp.parse();
-                title = doc.title();
-
-                if (isRevisit) {
-                    title = "[REVISITED] " + title;
+            if (status == 304 && previous != null) {
+                // Not modified since the validators we sent: nothing to download or parse
+                contentSize = 0;
+                loadTime = System.currentTimeMillis() - startTime;
+                contentType = null;
+                title = previous.title();
+                Metrics.UNCHANGED.increment();
+                if (followLinks) {
+                    enqueueKnownLinks(previous);
+                }
+                validators = new DatabaseManager.PageValidators(url,
+                        headerOr(resp, "ETag", previous.etag()),
+                        headerOr(resp, "Last-Modified", previous.lastModified()),
+                        previous.contentHash(), previous.title(), previous.parsedAt(), null);
+            } else if (service.isStreamExtraction() && !revisit && !service.isArchiving()) {
+                // Title and links are picked out while the body streams in; no DOM is built
+                CountingInputStream body = new CountingInputStream(resp.body());
+                if (isHtml) {
+                    LinkExtractor.Extraction extraction =
+                            LinkExtractor.extract(body, resp.charset(), resp.url(), followLinks);
+                    stageStart = Metrics.EXTRACT.recordSince(stageStart);
+                    title = extraction.title();
+                    enqueueLinks(extraction.links());
+                    stageStart = System.nanoTime();
                 }
+                contentSize = body.drain();
+                Metrics.DOWNLOAD.recordSince(stageStart);
+                loadTime = System.currentTimeMillis() - startTime;
+            } else {
+                // Revisits buffer the body even in stream mode, so that an
+                // unchanged page can be recognized before any extraction, and
+                // so does archiving, which keeps the bytes
+                byte[] body = resp.bodyAsBytes();
+                stageStart = Metrics.DOWNLOAD.recordSince(stageStart);
+                contentSize = body.length;
+                if (service.isArchiving()) {
+                    archived = body;
+                }
+                loadTime = System.currentTimeMillis() - startTime;
+                if (revisit && status < 300) {
+                    contentHash = sha256(body);
+                }
+                // A page that gets validators has its links saved with them,
+                // even past the depth limit, for when it comes back unchanged
+                boolean extractLinks = followLinks || contentHash != null;
+                Set<String> links = Set.of();
+                boolean unchanged = false;
+
+                if (isHtml && previous != null && contentHash != null && contentHash.equals(previous.contentHash())) {
+                    // Same bytes as when the page was last parsed: reuse what parsing found then
+                    unchanged = true;
+                    title = previous.title();
+                    Metrics.UNCHANGED.increment();
+                    if (followLinks) {
+                        enqueueKnownLinks(previous);
+                    }
+                } else if (isHtml && service.isStreamExtraction()) {
+                    LinkExtractor.Extraction extraction = LinkExtractor.extract(
+                            new ByteArrayInputStream(body), resp.charset(), resp.url(), extractLinks);
+                    Metrics.EXTRACT.recordSince(stageStart);
+                    title = extraction.title();
+                    links = extraction.links();
+                } else if (isHtml) {
+                    Document doc = Jsoup.parse(new ByteArrayInputStream(body), resp.charset(), resp.url());
+                    title = doc.title();
+                    stageStart = Metrics.PARSE.recordSince(stageStart);
 
-                if (depth < maxDepth) {
-                    Elements links = doc.select("a[href]");
-                    links.stream()
-                            .map(l -> l.attr("abs:href"))
-                            .filter(this::isValidUrl)
-                            .forEach(link -> {
-                                CrawlTask newTask = new CrawlTask(
-                                        link,
-                                        depth + 1,
-                                        maxDepth,
-                                        service,
-                                        db,
-                                        url,
-                                        urlFilter != null ? urlFilter.pattern() : null,
-                                        delay,
-                                        userAgent,
-                                        timeout
-                                );
-                                service.enqueueTask(newTask);
-                            });
+                    if (extractLinks) {
+                        links = new LinkedHashSet<>();
+                        for (Element anchor : doc.select("a[href]")) {
+                            links.add(anchor.attr("abs:href"));
+                        }
+                        Metrics.EXTRACT.recordSince(stageStart);
+                    }
                 }
+                if (followLinks) {
+                    enqueueLinks(links);
+                }
+                if (contentHash != null) {
+                    // parsedAt only sticks when the hash changed, see DatabaseManager
+                    validators = new DatabaseManager.PageValidators(url, resp.header("ETag"),
+                            resp.header("Last-Modified"), contentHash, title, startTime, unchanged ? null : links);
+                }
+            }
+
+            if (status >= 500 && status != 503) {
+                hosts.recordFailure(host, loadTime);
+            } else if (status != 429 && status != 503) {
+                hosts.recordSuccess(host, loadTime);
             }
 
             CrawlResult result = new CrawlResult(
                     url,
                     status,
-                    body.length,
+                    contentSize,
                     referrer,
                     contentType,
                     title,
                     loadTime,
                     Instant.now().toEpochMilli()
             );
-            service.addResult(result);
+            if (archived != null) {
+                service.archivePage(result, archived);
+            }
+            service.addResult(result, validators);
 
         } catch (Exception e) {
+            Metrics.FETCH_ERRORS.increment();
+            hosts.recordFailure(host, System.currentTimeMillis() - startTime);
             CrawlResult errorResult = new CrawlResult(
                     url,
                     500,
                     0,
                     referrer,
                     null,
-                    isRevisit ? "[REVISITED] Error processing URL" : "Error processing URL",
+                    "Error processing URL",
                     0,
                     Instant.now().toEpochMilli()
             );
             service.addResult(errorResult);
-        } finally {
-            service.taskCompleted();
         }
     }
 
-    private boolean isValidUrl(String u) {
-        try {
-            URI uri = new URI(u);
-            String scheme = uri.getScheme();
-            boolean isHttp = scheme != null && (scheme.equals("http") || scheme.equals("https"));
-
-            if (urlFilter != null && !urlFilter.matcher(u).matches()) {
-                return false;
+    // Consults the host's robots.txt (fetched once and cached by the service)
+    // and applies its Crawl-delay. A host whose robots.txt cannot be read is
+    // backed off and the task retried, as the RFC says not to crawl it then.
+    private boolean robotsAllow(HostController hosts, String host) {
+        String agent = service.robotsAgent();
+        if (agent == null) return true;
+        RobotsTxt robots = service.robots().rulesFor(url, service.fetcher(), hosts.timeoutFor(host));
+        if (robots.isUnreachable()) {
+            hosts.backOff(host);
+            if (attempt < MAX_ATTEMPTS) {
+                service.enqueueTask(retry());
+            } else {
+                Metrics.ROBOTS_BLOCKED.increment();
             }
-
-            return isHttp;
-        } catch (URISyntaxException e) {
             return false;
         }
+        hosts.setCrawlDelay(host, robots.crawlDelayMs(agent));
+        if (!robots.isAllowed(agent, RobotsCache.pathOf(url))) {
+            Metrics.ROBOTS_BLOCKED.increment();
+            return false;
+        }
+        return true;
     }
 
-    private String formatTimeDifference(long timeDiff) {
-        long seconds = timeDiff / 1000;
-        if (seconds < 60) {
-            return seconds + " seconds";
-        } else if (seconds < 3600) {
-            return (seconds / 60) + " minutes";
-        } else {
-            return (seconds / 3600) + " hours";
+    private static Map<String, String> conditionalHeaders(DatabaseManager.PageValidators previous) {
+        if (previous == null) return Map.of();
+        Map<String, String> headers = new HashMap<>(4);
+        if (previous.etag() != null) {
+            headers.put("If-None-Match", previous.etag());
         }
+        if (previous.lastModified() != null) {
+            headers.put("If-Modified-Since", previous.lastModified());
+        }
+        return headers;
     }
 
-    public static void resetVisitedInfo() {
-        VISITED_INFO.clear();
+    private static String headerOr(FetchResponse resp, String name, String fallback) {
+        String value = resp.header(name);
+        return value != null ? value : fallback;
+    }
+
+    private static String sha256(byte[] body) throws NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+    }
+
+    // An unchanged page links to what it linked to when it was last parsed,
+    // which was saved with its validators
+    private void enqueueKnownLinks(DatabaseManager.PageValidators previous) {
+        Set<String> links = new LinkedHashSet<>();
+        service.db().forEachPageLink(previous.url(), links::add);
+        enqueueLinks(links);
+    }
+
+    private CrawlTask retry() {
+        return new CrawlTask(url, depth, referrer, policy, service, attempt + 1);
     }
-}
 
+    // Links arrive already deduped within the page; they are canonicalized
+    // before the crawl's seen-set is checked, so only never-seen pages become
+    // tasks and repeats are just counted
+    private void enqueueLinks(Set<String> links) {
+        for (String link : links) {
+            String canonical = policy.accept(link);
+            if (canonical == null) {
+                continue;
+            }
+            // In cluster mode the owner of the link's host dedups and queues it
+            if (service.forwardIfRemote(canonical, depth + 1, url)) {
+                continue;
+            }
+            if (!service.markSeen(canonical)) {
+                service.duplicateLinkFound(canonical);
+                continue;
+            }
+            service.enqueueTask(new CrawlTask(canonical, depth + 1, url, policy, service, 1));
+        }
+    }
+}
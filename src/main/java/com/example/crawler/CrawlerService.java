@@ -1,119 +1,607 @@
 package com.example.crawler;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+// One crawl session: its own frontier, seen-set, progress and result ring.
+// Sessions created through CrawlSessions share the database, the robots.txt
+// cache and a global budget of concurrent fetches.
 public class CrawlerService {
+    private static final Logger LOGGER = Logger.getLogger(CrawlerService.class.getName());
+    private static final long CHECKPOINT_INTERVAL_SECONDS = 30;
+
     public boolean isActiveSession() {
         return running || paused;
     }
     private ExecutorService executor;
-    private final ConcurrentLinkedQueue<CrawlResult> results = new ConcurrentLinkedQueue<>();
-    private final Queue<CrawlTask> pendingTasks = new ConcurrentLinkedQueue<>();
-    private final DatabaseManager db = new DatabaseManager();
+    private final ResultBuffer results = new ResultBuffer(ResultBuffer.DEFAULT_CAPACITY);
+    private volatile Frontier frontier = new Frontier(0);
+    private SeenUrlStore seenUrls = new FingerprintSeenUrlStore(0);
+    private final LongAdder duplicateLinks = new LongAdder();
+    private volatile Fetcher fetcher = new JsoupFetcher("MultiCrawlerBot/1.0", 10000);
+    private volatile HostController hostController = new HostController(false, Integer.MAX_VALUE, 10000);
+    private Thread dispatcher;
+    private final Set<CrawlTask> inFlight = ConcurrentHashMap.newKeySet();
+    private final Path frontierDir;
+    private FrontierLog frontierLog;
+    private ScheduledExecutorService checkpointer;
+    private final DatabaseManager db;
+    private final String sessionId;
+    // Permits for concurrent fetches across all sessions, or null for no global limit
+    private final Semaphore fetchBudget;
     private volatile boolean running = false;
     private volatile boolean paused = false;
-    private int totalTasks = 0;
-    private int completedTasks = 0;
-    private long startTime = 0;
-    private CrawlRequest lastRequest = null;
-    private boolean resumingCrawl = false;
+    private volatile CrawlProgress progress = new CrawlProgress(() -> {});
+    private volatile long startTime = 0;
+    private volatile CrawlRequest lastRequest = null;
+    // Crawl-scoped settings shared by every task instead of copied into each
+    private volatile UrlPolicy policy = new UrlPolicy(null, 0, false);
+    private volatile boolean streamExtraction = false;
+    private volatile boolean revisit = false;
+    private volatile boolean archivePages = false;
+    // Product token matched against robots.txt groups, null when ignoring robots
+    private volatile String robotsAgent = null;
+    private final RobotsCache robots;
+    // Shared by every session; null when the service runs on its own
+    private final PageArchive archive;
+    private Thread sitemapSeeder;
+    // Set while this session runs a partition of a distributed crawl
+    private volatile ClusterWorker cluster;
+    private volatile boolean partitionOpen = false;
+
+    public CrawlerService() {
+        this(FrontierLog.defaultDirectory());
+    }
+
+    public CrawlerService(Path frontierDir) {
+        this(frontierDir, new DatabaseManager());
+    }
+
+    public CrawlerService(Path frontierDir, DatabaseManager db) {
+        this(CrawlSessions.DEFAULT_SESSION, frontierDir, db, new RobotsCache(), null, null);
+    }
+
+    CrawlerService(String sessionId, Path frontierDir, DatabaseManager db, RobotsCache robots, PageArchive archive,
+                   Semaphore fetchBudget) {
+        this.sessionId = sessionId;
+        this.frontierDir = frontierDir;
+        this.db = db;
+        this.robots = robots;
+        this.archive = archive;
+        this.fetchBudget = fetchBudget;
+        this.frontierLog = new FrontierLog(frontierDir);
+        restoreSavedCrawl();
+    }
 
     public synchronized void start(CrawlRequest req) {
         if (running) return;
 
-        if (paused && lastRequest != null) {
+        // A paused crawl with work left is resumed; a finished one starts over
+        if (paused && lastRequest != null && !progress.isFinished()) {
             resumeCrawl();
             return;
         }
 
+        // Compiled before anything is touched: an invalid pattern leaves the
+        // previous crawl's results and checkpoint as they were
+        UrlPolicy urls = UrlPolicy.create(req);
+        FrontierOrder order = FrontierOrder.create(req);
+        cluster = null;
+        beginCrawl(req, urls, order);
+
+        // The seed is canonicalized like any discovered link but not filtered
+        String seed = policy.canonicalize(req.seedUrl());
+        if (seed == null) seed = req.seedUrl();
+        seenUrls.add(seed);
+
+        progress.taskEnqueued();
+        frontier.admit(seed);
+        frontier.add(newTask(new FrontierEntry(seed, 0, "")));
+        startDispatcher(slotsFor(req));
+        startCheckpointer();
+        if (req.seedSitemaps() && req.maxDepth() > 0) {
+            startSitemapSeeder(seed, req.timeout());
+        }
+    }
+
+    // Cluster mode: runs this node's share of a distributed crawl. There is
+    // no seed; every task arrives through acceptForwarded, and the crawl holds
+    // one extra outstanding task so it stays open while this node is idle,
+    // until the coordinator sees the whole cluster idle (finishPartition).
+    synchronized void startPartition(CrawlRequest req, ClusterWorker worker) {
+        UrlPolicy urls = UrlPolicy.create(req);
+        FrontierOrder order = FrontierOrder.create(req);
+        if (running || paused) {
+            terminateCrawl();
+        }
+        cluster = worker;
+        beginCrawl(req, urls, order);
+        partitionOpen = true;
+        progress.taskEnqueued();
+        startDispatcher(slotsFor(req));
+        startCheckpointer();
+    }
+
+    // Releases the partition's hold; the crawl then stops as its last task completes
+    synchronized void finishPartition() {
+        if (!partitionOpen) return;
+        partitionOpen = false;
+        progress.taskCompleted();
+    }
+
+    // Settings, state and counters of a new crawl, before anything is queued.
+    // The URL policy and frontier order come from the caller, which builds
+    // them first since they are what a bad request fails on.
+    private void beginCrawl(CrawlRequest req, UrlPolicy urls, FrontierOrder order) {
         results.clear();
-        pendingTasks.clear();
-        executor = Executors.newFixedThreadPool(req.threads());
+        lastRequest = req;
+        policy = urls;
+        streamExtraction = req.isStreamExtraction();
+        revisit = req.revisit();
+        archivePages = req.archive() && archive != null;
+        robotsAgent = req.ignoreRobots() ? null : RobotsTxt.agentToken(req.userAgent());
+        replaceFetcher(Fetcher.create(req));
+        hostController = HostController.create(req);
+        // A new crawl replaces whatever frontier an earlier one left on disk
+        frontierLog.clear();
+        frontier = newFrontier(req, order);
+        executor = newExecutor(req);
         running = true;
         paused = false;
-        resumingCrawl = false;
-        totalTasks = 1;
-        completedTasks = 0;
+        progress = new CrawlProgress(this::crawlFinished);
         startTime = Instant.now().toEpochMilli();
-        lastRequest = req;
+        seenUrls = SeenUrlStore.create(req);
+        duplicateLinks.reset();
+    }
+
+    // Streams the seed host's sitemaps into the frontier as depth-1 tasks while
+    // the crawl runs. The seeder counts as an outstanding task so the crawl
+    // cannot finish under it; it is not resumed after a pause.
+    private void startSitemapSeeder(String seed, int timeoutMs) {
+        CrawlProgress tasks = progress;
+        Fetcher sitemapFetcher = fetcher;
+        UrlPolicy urls = policy;
+        tasks.taskEnqueued();
+        sitemapSeeder = new Thread(() -> {
+            try {
+                RobotsTxt rules = robots.rulesFor(seed, sitemapFetcher, timeoutMs);
+                int read = new SitemapSeeder(sitemapFetcher, timeoutMs).seed(RobotsCache.originOf(seed), rules, loc -> {
+                    if (!running || progress != tasks) {
+                        throw new CancellationException("crawl stopped");
+                    }
+                    String url = urls.accept(loc);
+                    if (url != null && !forwardIfRemote(url, 1, seed) && markSeen(url)) {
+                        enqueueTask(new CrawlTask(url, 1, seed, this));
+                    }
+                });
+                System.out.println("Read " + read + " sitemaps for " + seed);
+            } finally {
+                tasks.taskCompleted();
+            }
+        }, "sitemap-seeder-" + sessionId);
+        sitemapSeeder.setDaemon(true);
+        sitemapSeeder.start();
+    }
+
+    private void stopSitemapSeeder() {
+        if (sitemapSeeder != null) {
+            sitemapSeeder.interrupt();
+            sitemapSeeder = null;
+        }
+    }
+
+    private Frontier newFrontier(CrawlRequest req, FrontierOrder order) {
+        return new Frontier(req.delay(), req.frontierMemoryLimit(), frontierLog, this::newTask, hostController,
+                order, req.maxPagesPerHost());
+    }
+
+    private CrawlTask newTask(FrontierEntry entry) {
+        return new CrawlTask(entry.url(), entry.depth(), entry.referrer(), this);
+    }
+
+    // Picks up a crawl that was paused (or running) when the previous process
+    // exited. Pages already in SQLite since the crawl started count as seen, so
+    // replayed frontier entries for them are skipped.
+    private void restoreSavedCrawl() {
+        FrontierLog.SavedCrawl saved = FrontierLog.loadState(frontierDir);
+        if (saved == null || saved.request() == null) return;
+
+        lastRequest = saved.request();
+        policy = UrlPolicy.create(lastRequest);
+        streamExtraction = lastRequest.isStreamExtraction();
+        revisit = lastRequest.revisit();
+        archivePages = lastRequest.archive() && archive != null;
+        robotsAgent = lastRequest.ignoreRobots() ? null : RobotsTxt.agentToken(lastRequest.userAgent());
+        fetcher = Fetcher.create(lastRequest);
+        hostController = HostController.create(lastRequest);
+        seenUrls = SeenUrlStore.create(lastRequest);
+        db.forEachUrlSince(sessionId, saved.startTime(), seenUrls::add);
+        frontier = newFrontier(lastRequest, FrontierOrder.create(lastRequest));
+
+        try {
+            FrontierLog.drainSaved(frontierDir, entry -> {
+                if (seenUrls.add(entry.url())) {
+                    frontier.add(newTask(entry));
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to read saved frontier from " + frontierDir, e);
+        }
+
+        if (frontier.isEmpty()) {
+            // Nothing left to fetch: the saved crawl had already finished
+            frontierLog.clear();
+            lastRequest = null;
+            return;
+        }
 
-        CrawlTask.resetVisitedInfo();
+        progress = new CrawlProgress(
+                saved.completedTasks() + frontier.size(), saved.completedTasks(), this::crawlFinished);
+        startTime = saved.startTime();
+        paused = true;
+        checkpoint();
+        System.out.println("Restored paused crawl " + sessionId + " of " + lastRequest.seedUrl()
+                + " with " + frontier.size() + " pending tasks");
+    }
+
+    private void startCheckpointer() {
+        stopCheckpointer();
+        checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "crawl-checkpoint-" + sessionId);
+            t.setDaemon(true);
+            return t;
+        });
+        checkpointer.scheduleWithFixedDelay(this::checkpoint,
+                CHECKPOINT_INTERVAL_SECONDS, CHECKPOINT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
 
-        CrawlTask initialTask = new CrawlTask(
-                req.seedUrl(),
-                0,
-                req.maxDepth(),
-                this,
-                db,
-                "",
-                req.filter(),
-                req.delay(),
-                req.userAgent(),
-                req.timeout()
-        );
+    private void stopCheckpointer() {
+        if (checkpointer != null) {
+            checkpointer.shutdownNow();
+            checkpointer = null;
+        }
+    }
 
-        executor.submit(initialTask);
+    // Saves the in-memory frontier window, the tasks currently being fetched and
+    // the crawl settings; spilled entries are already on disk
+    private void checkpoint() {
+        CrawlRequest req = lastRequest;
+        if (req == null) return;
+        List<FrontierEntry> window = new ArrayList<>(frontier.snapshot());
+        for (CrawlTask task : inFlight) {
+            window.add(task.toEntry());
+        }
+        try {
+            frontierLog.writeCheckpoint(
+                    new FrontierLog.SavedCrawl(req, (int) progress.enqueued(), (int) progress.completed(), startTime),
+                    window);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to checkpoint frontier of crawl " + sessionId, e);
+        }
     }
 
     private synchronized void resumeCrawl() {
         if (!paused || lastRequest == null) return;
 
-        resumingCrawl = true;
-
-        executor = Executors.newFixedThreadPool(lastRequest.threads());
+        executor = newExecutor(lastRequest);
         running = true;
         paused = false;
 
-        int pendingCount = pendingTasks.size();
-        if (pendingCount > 0) {
-            CrawlTask[] tasks = pendingTasks.toArray(new CrawlTask[0]);
-            pendingTasks.clear();
+        // Tasks still counted as outstanding are all back in the frontier
+        System.out.println("Resumed crawl " + sessionId + " with " + frontier.size() + " pending tasks");
 
-            for (CrawlTask task : tasks) {
-                executor.submit(task);
+        startDispatcher(slotsFor(lastRequest));
+        startCheckpointer();
+    }
+
+    // Virtual mode runs one virtual thread per fetch; the dispatcher's slot
+    // semaphore caps how many are in flight
+    private ExecutorService newExecutor(CrawlRequest req) {
+        if (req.isVirtual()) {
+            try {
+                return (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor")
+                        .invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.out.println("Virtual threads require Java 21+, falling back to "
+                        + req.threads() + " platform threads");
+                return Executors.newFixedThreadPool(Math.max(1, req.threads()));
             }
+        }
+        return Executors.newFixedThreadPool(req.threads());
+    }
 
-            System.out.println("Resumed crawl with " + pendingCount + " pending tasks");
-        } else {
-            System.out.println("Warning: Resumed crawl but no pending tasks found");
-            if (completedTasks < totalTasks) {
-                System.out.println("Creating a new seed task to continue crawling");
-                CrawlTask newSeedTask = new CrawlTask(
-                        lastRequest.seedUrl(),
-                        0, // restart from depth 0
-                        lastRequest.maxDepth(),
-                        this,
-                        db,
-                        "",
-                        lastRequest.filter(),
-                        lastRequest.delay(),
-                        lastRequest.userAgent(),
-                        lastRequest.timeout()
-                );
-                executor.submit(newSeedTask);
+    private int slotsFor(CrawlRequest req) {
+        if (executor instanceof ThreadPoolExecutor pool) {
+            return pool.getMaximumPoolSize();
+        }
+        return req.maxInFlight();
+    }
+
+    // Feeds the pool from the frontier, never holding more tasks than there are
+    // free workers so that politeness is enforced at fetch time. A task that is
+    // ready also needs a permit from the global fetch budget; the semaphore is
+    // fair and each dispatcher waits for one permit at a time, so sessions
+    // with work take turns as permits free up.
+    private void startDispatcher(int slots) {
+        ExecutorService pool = executor;
+        Frontier source = frontier;
+        CrawlProgress tasks = progress;
+        Semaphore freeWorkers = new Semaphore(slots);
+        Semaphore budget = fetchBudget;
+
+        dispatcher = new Thread(() -> {
+            while (running) {
+                CrawlTask task;
+                try {
+                    freeWorkers.acquire();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    task = source.take();
+                } catch (InterruptedException e) {
+                    freeWorkers.release();
+                    return;
+                }
+                inFlight.add(task);
+                if (budget != null) {
+                    try {
+                        budget.acquire();
+                    } catch (InterruptedException e) {
+                        // Paused while waiting for a fetch permit; keep the task for resume
+                        requeue(source, task);
+                        freeWorkers.release();
+                        return;
+                    }
+                }
+                try {
+                    pool.execute(() -> {
+                        try {
+                            task.run();
+                        } finally {
+                            inFlight.remove(task);
+                            source.taskDone(task);
+                            if (budget != null) {
+                                budget.release();
+                            }
+                            freeWorkers.release();
+                            tasks.taskCompleted();
+                            if (paused && inFlight.isEmpty()) {
+                                // Last fetch of a paused crawl: capture the links it found
+                                saveFrontier();
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // Paused between take() and execute(); keep the task for resume
+                    requeue(source, task);
+                    if (budget != null) {
+                        budget.release();
+                    }
+                    freeWorkers.release();
+                    return;
+                }
             }
+        }, "crawl-dispatcher-" + sessionId);
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    private void requeue(Frontier source, CrawlTask task) {
+        inFlight.remove(task);
+        source.taskDone(task);
+        source.add(task);
+    }
+
+    private void stopDispatcher() {
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+            dispatcher = null;
         }
     }
 
-    public void taskCompleted() {
-        completedTasks++;
-        if (completedTasks >= totalTasks && running && !resumingCrawl) {
+    // Called by the worker that completes the crawl's last outstanding task
+    private void crawlFinished() {
+        if (running) {
             stop();
-        } else if (resumingCrawl && pendingTasks.isEmpty() && completedTasks >= totalTasks) {
-            resumingCrawl = false;
         }
     }
 
-    public synchronized void enqueueTask(CrawlTask task) {
-        totalTasks++;
+    public Fetcher fetcher() {
+        return fetcher;
+    }
 
-        if (running) {
-            executor.submit(task);
-        } else if (paused) {
-            pendingTasks.add(task);
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    HostController hostController() {
+        return hostController;
+    }
+
+    List<HostController.HostReport> getHostReport(int limit) {
+        return hostController.report(limit);
+    }
+
+    public Fetcher.FetcherStats getFetcherStats() {
+        return fetcher.stats();
+    }
+
+    private void replaceFetcher(Fetcher next) {
+        Fetcher previous = fetcher;
+        fetcher = next;
+        previous.close();
+    }
+
+    // Returns true the first time a URL is seen in this crawl
+    public boolean markSeen(String url) {
+        return seenUrls.add(url);
+    }
+
+    // Counts links that were skipped because the URL was already seen; a
+    // best-first frontier also ranks the URL higher if it is still queued
+    public void duplicateLinkFound(String url) {
+        duplicateLinks.increment();
+        frontier.linkedAgain(url);
+    }
+
+    public long getFrontierSize() {
+        return frontier.size();
+    }
+
+    // Always 0 unless something bypasses the dispatcher, which only hands the
+    // executor as many tasks as it has free workers
+    public int getExecutorQueueDepth() {
+        return executor instanceof ThreadPoolExecutor pool ? pool.getQueue().size() : 0;
+    }
+
+    UrlPolicy policy() {
+        return policy;
+    }
+
+    String robotsAgent() {
+        return robotsAgent;
+    }
+
+    RobotsCache robots() {
+        return robots;
+    }
+
+    boolean isRevisit() {
+        return revisit;
+    }
+
+    DatabaseManager db() {
+        return db;
+    }
+
+    boolean isStreamExtraction() {
+        return streamExtraction;
+    }
+
+    boolean isArchiving() {
+        return archivePages;
+    }
+
+    void archivePage(CrawlResult result, byte[] body) {
+        archive.append(result.url(), result.statusCode(), result.contentType(), result.timestamp(), body);
+    }
+
+    public int getActiveWorkers() {
+        return inFlight.size();
+    }
+
+    public SeenUrlStore.MemoryReport getSeenUrlReport() {
+        return seenUrls.memoryReport();
+    }
+
+    // In cluster mode, hands a URL whose host another node owns to that node;
+    // false when the URL is this session's to crawl
+    boolean forwardIfRemote(String url, int depth, String referrer) {
+        ClusterWorker worker = cluster;
+        return worker != null && worker.forwardIfRemote(url, depth, referrer);
+    }
+
+    // Links another cluster node found for hosts this node owns. Ownership is
+    // checked again, since the sender may have routed them with an older ring.
+    void acceptForwarded(List<FrontierEntry> entries) {
+        CrawlRequest req = lastRequest;
+        for (FrontierEntry entry : entries) {
+            if (forwardIfRemote(entry.url(), entry.depth(), entry.referrer())) continue;
+            if (entry.depth() == ClusterWorker.SEEN_ONLY) {
+                markSeen(entry.url());
+                continue;
+            }
+            if (!markSeen(entry.url())) {
+                duplicateLinkFound(entry.url());
+                continue;
+            }
+            enqueueTask(newTask(entry));
+            if (entry.depth() == 0 && req != null && req.seedSitemaps() && req.maxDepth() > 0) {
+                startSitemapSeeder(entry.url(), req.timeout());
+            }
+        }
+    }
+
+    // Takes the queued tasks of hosts this node no longer owns off the
+    // frontier; they count as done here once handed to the consumer
+    int drainForeignHosts(Predicate<String> foreign, Consumer<FrontierEntry> consumer) {
+        CrawlProgress tasks = progress;
+        List<CrawlTask> moved = frontier.removeHosts(foreign);
+        for (CrawlTask task : moved) {
+            consumer.accept(task.toEntry());
+            tasks.taskCompleted();
+        }
+        return moved.size();
+    }
+
+    // Same for a node leaving the cluster, including entries spilled to disk
+    void drainAll(Consumer<FrontierEntry> consumer) {
+        CrawlProgress tasks = progress;
+        drainForeignHosts(host -> true, consumer);
+        frontier.drainSpilled(entry -> {
+            consumer.accept(entry);
+            tasks.taskCompleted();
+        });
+    }
+
+    // A node leaving the cluster: stops dispatching, lets running fetches
+    // finish (forwarding the links they find), then hands every queued entry
+    // to the consumer and drops the partition
+    void handOffPartition(Consumer<FrontierEntry> consumer) {
+        stop();
+        ExecutorService pool = executor;
+        if (pool != null) {
+            try {
+                pool.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        drainAll(consumer);
+        terminateCrawl();
+    }
+
+    // URLs this crawl has fetched so far, once the pending results are written
+    void forEachCrawledUrl(Consumer<String> consumer) {
+        long since = startTime;
+        if (since == 0) return;
+        db.flush();
+        db.forEachUrlSince(sessionId, since, consumer);
+    }
+
+    // Tasks queued or running, not counting a cluster partition's hold
+    long pendingTasks() {
+        if (!running && !paused) return 0;
+        long outstanding = progress.outstanding();
+        return partitionOpen ? Math.max(0, outstanding - 1) : outstanding;
+    }
+
+    CrawlProgress progress() {
+        return progress;
+    }
+
+    // Runs on every worker for every new link, so it takes no service lock; the
+    // task is counted before the worker that found it completes
+    public void enqueueTask(CrawlTask task) {
+        if (running || paused) {
+            if (!task.isRetry() && !frontier.admit(task.url())) {
+                Metrics.HOST_CAP_SKIPPED.increment();
+                return;
+            }
+            progress.taskEnqueued();
+            frontier.add(task);
         }
     }
 
@@ -122,46 +610,83 @@ public class CrawlerService {
         if (startTime > 0) {
             duration = Instant.now().toEpochMilli() - startTime;
         }
-        return new Status(running, paused, totalTasks, completedTasks, duration);
+        CrawlProgress current = progress;
+        return new Status(running, paused, (int) current.enqueued(), (int) current.completed(),
+                duration, duplicateLinks.sum());
     }
 
     public List<CrawlResult> getResults() {
-        return results.stream().toList();
+        return results.snapshot();
+    }
+
+    // Results added after the given sequence number, for incremental polling
+    public ResultBuffer.Slice getResultsSince(long afterSeq) {
+        return results.since(afterSeq);
+    }
+
+    public ResultBuffer.Slice getResultsBetween(long afterSeq, long throughSeq) {
+        return results.since(afterSeq, throughSeq);
+    }
+
+    public long getResultsEpoch() {
+        return results.epoch();
+    }
+
+    public long getLastResultSeq() {
+        return results.lastSeq();
     }
 
     public void addResult(CrawlResult r) {
+        addResult(r, null);
+    }
+
+    // Validators, when given, are saved in the same transaction as the result
+    void addResult(CrawlResult r, DatabaseManager.PageValidators validators) {
+        Metrics.PAGES.increment();
+        Metrics.BYTES.add(r.contentSize());
         results.add(r);
-        db.insertResult(r);
+        db.insertResult(sessionId, r, validators);
     }
 
     public synchronized void stop() {
         if (!running) return;
         running = false;
         paused = true;
-        resumingCrawl = false;
 
+        // Undispatched tasks stay in the frontier until the crawl is resumed
+        stopDispatcher();
+        stopSitemapSeeder();
+        stopCheckpointer();
         if (executor != null) {
             executor.shutdown();
+        }
+        db.flush();
+        saveFrontier();
+    }
 
-            Runnable task;
-            while (executor instanceof ThreadPoolExecutor &&
-                    (task = ((ThreadPoolExecutor) executor).getQueue().poll()) != null) {
-                if (task instanceof CrawlTask) {
-                    pendingTasks.add((CrawlTask) task);
-                }
-            }
+    // A finished crawl leaves nothing on disk; an unfinished one is checkpointed
+    private void saveFrontier() {
+        if (progress.isFinished()) {
+            frontierLog.clear();
+        } else {
+            checkpoint();
         }
     }
 
     public synchronized void terminateCrawl() {
         running = false;
         paused = false;
-        resumingCrawl = false;
+        partitionOpen = false;
+        stopDispatcher();
+        stopSitemapSeeder();
+        stopCheckpointer();
         if (executor != null) {
             executor.shutdownNow();
         }
-        pendingTasks.clear();
+        frontier.clear();
+        frontierLog.clear();
         lastRequest = null;
+        db.flush();
     }
 
     public boolean clearDatabase() {
@@ -171,5 +696,36 @@ public class CrawlerService {
     public List<CrawlResult> getResultsFromDb() {
         return db.getAllResults();
     }
+
+    public void streamResultsFromDb(DatabaseManager.ResultQuery query, DatabaseManager.RowHandler handler)
+            throws IOException {
+        db.streamResults(query, handler);
+    }
+
+    public DatabaseManager.WriterStats getWriterStats() {
+        return db.getWriterStats();
+    }
+
+    // Pauses a running crawl so its frontier is checkpointed for the next
+    // process, then drains queued results to SQLite before the JVM exits
+    public void shutdown() {
+        close();
+        db.close();
+    }
+
+    // Same, but leaves the database open for other sessions sharing it
+    void close() {
+        stop();
+        ExecutorService pool = executor;
+        if (pool != null) {
+            try {
+                pool.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        frontierLog.close();
+        fetcher.close();
+    }
 }
 
@@ -1,8 +1,16 @@
 package com.example.crawler;
 
+import org.sqlite.SQLiteConfig;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -10,62 +18,159 @@ import java.util.logging.Logger;
 // Manages database operations for storing and retrieving crawl results
 public class DatabaseManager {
     private static final Logger LOGGER = Logger.getLogger(DatabaseManager.class.getName());
-    private static final String DB_URL = "jdbc:sqlite:crawl_results.db";
+    private static final String DEFAULT_DB_FILE = "crawl_results.db";
+    private static final String INSERT_SQL = "INSERT INTO crawl_results (url, status_code, content_size, referrer, " +
+            "content_type, page_title, load_time, timestamp, session_id, host) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // parsed_at only moves when the content hash changes, see PageValidators
+    private static final String UPSERT_VALIDATORS_SQL = "INSERT INTO page_validators (url, etag, last_modified, " +
+            "content_hash, page_title, parsed_at) VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT(url) DO UPDATE SET etag = excluded.etag, last_modified = excluded.last_modified, " +
+            "content_hash = excluded.content_hash, page_title = excluded.page_title, " +
+            "parsed_at = CASE WHEN page_validators.content_hash IS excluded.content_hash " +
+            "THEN page_validators.parsed_at ELSE excluded.parsed_at END";
+    private static final String DELETE_LINKS_SQL = "DELETE FROM page_links WHERE url = ?";
+    private static final String INSERT_LINK_SQL = "INSERT INTO page_links (url, link) VALUES (?, ?)";
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 250;
+    public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+    private final String dbUrl;
+    private final ResultWriter writer;
 
     public DatabaseManager() {
+        this(DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL_MS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public DatabaseManager(int batchSize, long flushIntervalMs, int queueCapacity) {
+        this(Paths.get(DEFAULT_DB_FILE), batchSize, flushIntervalMs, queueCapacity);
+    }
+
+    // A database file other than the default, e.g. a scratch file for benchmarks
+    public DatabaseManager(Path dbFile, int batchSize, long flushIntervalMs, int queueCapacity) {
+        this.dbUrl = "jdbc:sqlite:" + dbFile;
         initializeDatabase();
+        writer = new ResultWriter(this, batchSize, flushIntervalMs, queueCapacity);
     }
 
+    // Creates or upgrades the schema, see SchemaMigrations
     private void initializeDatabase() {
-        String createTableSQL =
-                "CREATE TABLE IF NOT EXISTS crawl_results (" +
-                        "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                        "url TEXT NOT NULL," +
-                        "status_code INTEGER," +
-                        "content_size INTEGER," +
-                        "referrer TEXT," +
-                        "content_type TEXT," +
-                        "page_title TEXT," +
-                        "load_time INTEGER," +
-                        "timestamp INTEGER" +
-                        ")";
-
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(createTableSQL);
-            LOGGER.info("Database initialized successfully");
+        try (Connection conn = getConnection()) {
+            int from = SchemaMigrations.migrate(conn);
+            LOGGER.info("Database initialized successfully (schema version " + from + " -> "
+                    + SchemaMigrations.latestVersion() + ")");
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to initialize database", e);
         }
     }
 
     private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL);
+        SQLiteConfig config = new SQLiteConfig();
+        config.setBusyTimeout(5000);
+        return DriverManager.getConnection(dbUrl, config.toProperties());
+    }
+
+    // WAL lets readers (API queries) proceed while the writer holds a transaction open
+    Connection openWriterConnection() throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        config.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+        config.setBusyTimeout(5000);
+        Connection conn = DriverManager.getConnection(dbUrl, config.toProperties());
+        conn.setAutoCommit(false);
+        return conn;
     }
 
+    // Queues the result for the background writer; blocks only when the write queue is full
     public void insertResult(CrawlResult result) {
-        String sql = "INSERT INTO crawl_results (url, status_code, content_size, referrer, " +
-                "content_type, page_title, load_time, timestamp) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        writer.enqueue(CrawlSessions.DEFAULT_SESSION, result, null);
+    }
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    // Same, tagged with the crawl session and also saving the page's
+    // validators (if any) in the same transaction
+    public void insertResult(String sessionId, CrawlResult result, PageValidators validators) {
+        writer.enqueue(sessionId, result, validators);
+    }
 
-            pstmt.setString(1, result.url());
-            pstmt.setInt(2, result.statusCode());
-            pstmt.setLong(3, result.contentSize());
-            pstmt.setString(4, result.referrer());
-            pstmt.setString(5, result.contentType());
-            pstmt.setString(6, result.title());
-            pstmt.setLong(7, result.loadTime());
-            pstmt.setLong(8, result.timestamp());
+    // Rows, validators, page links and the rollup deltas for the batch commit together
+    void insertBatch(Connection conn, List<ResultWriter.Row> batch) throws SQLException {
+        StatsRollup rollup = new StatsRollup();
+        try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL);
+             PreparedStatement upsert = conn.prepareStatement(UPSERT_VALIDATORS_SQL);
+             PreparedStatement deleteLinks = conn.prepareStatement(DELETE_LINKS_SQL);
+             PreparedStatement insertLink = conn.prepareStatement(INSERT_LINK_SQL)) {
+            boolean anyValidators = false;
+            boolean anyLinks = false;
+            for (ResultWriter.Row row : batch) {
+                CrawlResult result = row.result();
+                String host = Frontier.hostOf(result.url());
+                pstmt.setString(1, result.url());
+                pstmt.setInt(2, result.statusCode());
+                pstmt.setLong(3, result.contentSize());
+                pstmt.setString(4, result.referrer());
+                pstmt.setString(5, result.contentType());
+                pstmt.setString(6, result.title());
+                pstmt.setLong(7, result.loadTime());
+                pstmt.setLong(8, result.timestamp());
+                pstmt.setString(9, row.sessionId());
+                pstmt.setString(10, host);
+                pstmt.addBatch();
+                rollup.add(row.sessionId(), host, result);
 
-            pstmt.executeUpdate();
+                PageValidators validators = row.validators();
+                if (validators != null) {
+                    anyValidators = true;
+                    upsert.setString(1, validators.url());
+                    upsert.setString(2, validators.etag());
+                    upsert.setString(3, validators.lastModified());
+                    upsert.setString(4, validators.contentHash());
+                    upsert.setString(5, validators.title());
+                    upsert.setLong(6, validators.parsedAt());
+                    upsert.addBatch();
+                    if (validators.links() != null) {
+                        // The page was parsed: its links replace the saved ones
+                        anyLinks = true;
+                        deleteLinks.setString(1, validators.url());
+                        deleteLinks.addBatch();
+                        for (String link : validators.links()) {
+                            insertLink.setString(1, validators.url());
+                            insertLink.setString(2, link);
+                            insertLink.addBatch();
+                        }
+                    }
+                }
+            }
+            pstmt.executeBatch();
+            if (anyValidators) {
+                upsert.executeBatch();
+            }
+            if (anyLinks) {
+                // Deletes first, so a page twice in one batch keeps its later links
+                deleteLinks.executeBatch();
+                insertLink.executeBatch();
+            }
+            rollup.write(conn);
+            conn.commit();
         } catch (SQLException e) {
-            LOGGER.log(Level.WARNING, "Failed to insert crawl result", e);
+            conn.rollback();
+            throw e;
         }
     }
 
+    // Blocks until everything queued so far has been committed
+    public void flush() {
+        writer.flush();
+    }
+
+    public void close() {
+        writer.close();
+    }
+
+    public WriterStats getWriterStats() {
+        return writer.stats();
+    }
+
     public List<CrawlResult> getAllResults() {
         List<CrawlResult> results = new ArrayList<>();
         String sql = "SELECT url, status_code, content_size, referrer, content_type, " +
@@ -95,13 +200,162 @@ public class DatabaseManager {
         return results;
     }
 
+    // Keyset-paginated read: rows are visited in id order straight off the
+    // ResultSet, so memory use does not depend on table size
+    public void streamResults(ResultQuery query, RowHandler handler) throws IOException {
+        StringBuilder sql = new StringBuilder("SELECT id, url, status_code, content_size, referrer, content_type, " +
+                "page_title, load_time, timestamp FROM crawl_results WHERE id > ?");
+        List<Object> params = new ArrayList<>();
+        params.add(query.afterId());
+
+        if (query.sessionId() != null) {
+            sql.append(" AND session_id = ?");
+            params.add(query.sessionId());
+        }
+        if (query.statusCode() != null) {
+            sql.append(" AND status_code = ?");
+            params.add(query.statusCode());
+        }
+        if (query.host() != null) {
+            sql.append(" AND host = ?");
+            params.add(query.host().toLowerCase(Locale.ROOT));
+        }
+        if (query.fromTime() != null) {
+            sql.append(" AND timestamp >= ?");
+            params.add(query.fromTime());
+        }
+        if (query.toTime() != null) {
+            sql.append(" AND timestamp < ?");
+            params.add(query.toTime());
+        }
+        sql.append(" ORDER BY id");
+        if (query.limit() > 0) {
+            sql.append(" LIMIT ?");
+            params.add(query.limit());
+        }
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.accept(rs.getLong("id"), new CrawlResult(
+                            rs.getString("url"),
+                            rs.getInt("status_code"),
+                            rs.getLong("content_size"),
+                            rs.getString("referrer"),
+                            rs.getString("content_type"),
+                            rs.getString("page_title"),
+                            rs.getLong("load_time"),
+                            rs.getLong("timestamp")
+                    ));
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Failed to stream crawl results", e);
+            throw new IOException("Failed to read crawl results", e);
+        }
+    }
+
+    // Streams the URL of every row the session recorded at or after the given time
+    public void forEachUrlSince(String sessionId, long timestamp, Consumer<String> consumer) {
+        String sql = "SELECT url FROM crawl_results WHERE session_id = ? AND timestamp >= ?";
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, sessionId);
+            pstmt.setLong(2, timestamp);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(rs.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Failed to read crawled URLs", e);
+        }
+    }
+
+    // Validators of the page, or null if it was not fetched in revisit mode before
+    public PageValidators findValidators(String url) {
+        String sql = "SELECT etag, last_modified, content_hash, page_title, parsed_at FROM page_validators WHERE url = ?";
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, url);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return new PageValidators(url, rs.getString(1), rs.getString(2), rs.getString(3),
+                            rs.getString(4), rs.getLong(5), null);
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Failed to read validators for " + url, e);
+        }
+        return null;
+    }
+
+    // The result row with the given id, or null
+    public CrawlResult findResult(long id) {
+        String sql = "SELECT url, status_code, content_size, referrer, content_type, " +
+                "page_title, load_time, timestamp FROM crawl_results WHERE id = ?";
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return new CrawlResult(
+                            rs.getString("url"),
+                            rs.getInt("status_code"),
+                            rs.getLong("content_size"),
+                            rs.getString("referrer"),
+                            rs.getString("content_type"),
+                            rs.getString("page_title"),
+                            rs.getLong("load_time"),
+                            rs.getLong("timestamp")
+                    );
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Failed to read crawl result " + id, e);
+        }
+        return null;
+    }
+
+    // The links extracted from the page when its current content was last
+    // parsed, in the order they appeared
+    public void forEachPageLink(String url, Consumer<String> consumer) {
+        String sql = "SELECT link FROM page_links WHERE url = ? ORDER BY rowid";
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, url);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(rs.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Failed to read links of " + url, e);
+        }
+    }
+
+    // Validators and page links go with the results, so that the next crawl
+    // parses every page again
     public boolean clearAllResults() {
-        String sql = "DELETE FROM crawl_results";
+        flush();
 
         try (Connection conn = getConnection();
              Statement stmt = conn.createStatement()) {
 
-            stmt.execute(sql);
+            stmt.execute("DELETE FROM crawl_results");
+            stmt.execute("DELETE FROM page_validators");
+            stmt.execute("DELETE FROM page_links");
+            stmt.execute("DELETE FROM host_stats");
+            stmt.execute("DELETE FROM status_stats");
+            stmt.execute("DELETE FROM latency_stats");
             return true;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Failed to clear crawl results", e);
@@ -110,23 +364,26 @@ public class DatabaseManager {
     }
 
     public CrawlStatistics getStatistics() {
-        String sql = "SELECT " +
-                "COUNT(*) as total_pages, " +
-                "SUM(CASE WHEN status_code >= 200 AND status_code < 300 THEN 1 ELSE 0 END) as success_count, " +
-                "AVG(content_size) as avg_size, " +
-                "MAX(timestamp) - MIN(timestamp) as total_time " +
-                "FROM crawl_results";
+        return getStatistics(null);
+    }
+
+    // Read from the host rollup, so the cost depends on the number of hosts,
+    // not rows. A null session covers all sessions.
+    public CrawlStatistics getStatistics(String sessionId) {
+        String sql = "SELECT SUM(pages), SUM(successes), SUM(bytes), MAX(last_seen) - MIN(first_seen) " +
+                "FROM host_stats" + sessionFilter(sessionId);
 
         try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             PreparedStatement pstmt = prepare(conn, sql, sessionId);
+             ResultSet rs = pstmt.executeQuery()) {
 
             if (rs.next()) {
+                long pages = rs.getLong(1);
                 return new CrawlStatistics(
-                        rs.getInt("total_pages"),
-                        rs.getInt("success_count"),
-                        rs.getDouble("avg_size"),
-                        rs.getLong("total_time")
+                        (int) pages,
+                        rs.getInt(2),
+                        pages == 0 ? 0 : (double) rs.getLong(3) / pages,
+                        rs.getLong(4)
                 );
             }
         } catch (SQLException e) {
@@ -136,10 +393,170 @@ public class DatabaseManager {
         return new CrawlStatistics(0, 0, 0, 0);
     }
 
+    // Busiest hosts first by the given measure: pages, errors, bytes or latency
+    // (mean load time)
+    public List<HostStats> getHostStats(String sessionId, String sortBy, int limit) {
+        String order = switch (sortBy == null ? "pages" : sortBy) {
+            case "pages" -> "SUM(pages)";
+            case "errors" -> "SUM(errors)";
+            case "bytes" -> "SUM(bytes)";
+            case "latency" -> "SUM(load_time) * 1.0 / SUM(pages)";
+            default -> throw new IllegalArgumentException("sort must be pages, errors, bytes or latency");
+        };
+        String sql = "SELECT host, SUM(pages), SUM(successes), SUM(errors), SUM(bytes), SUM(load_time), " +
+                "MIN(first_seen), MAX(last_seen) FROM host_stats" + sessionFilter(sessionId) + " GROUP BY host ORDER BY " + order + " DESC, host LIMIT " + limit;
+
+        List<HostStats> hosts = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = prepare(conn, sql, sessionId);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                long pages = rs.getLong(2);
+                hosts.add(new HostStats(rs.getString(1), pages, rs.getLong(3), rs.getLong(4), rs.getLong(5),
+                        pages == 0 ? 0 : (double) rs.getLong(6) / pages, rs.getLong(7), rs.getLong(8)));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Failed to retrieve host statistics", e);
+        }
+        return hosts;
+    }
+
+    public List<StatusStats> getStatusStats(String sessionId) {
+        String sql = "SELECT status_code, SUM(pages), SUM(bytes) FROM status_stats" + sessionFilter(sessionId) +
+                " GROUP BY status_code ORDER BY status_code";
+
+        List<StatusStats> statuses = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = prepare(conn, sql, sessionId);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                statuses.add(new StatusStats(rs.getInt(1), rs.getLong(2), rs.getLong(3)));
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Failed to retrieve status statistics", e);
+        }
+        return statuses;
+    }
+
+    // Percentiles are read off the load-time histogram and reported as the
+    // upper bound of their bucket, within 12.5% of the exact value
+    public LatencyStats getLatencyStats(String sessionId) {
+        String sql = "SELECT bucket, SUM(pages) FROM latency_stats" + sessionFilter(sessionId) +
+                " GROUP BY bucket ORDER BY bucket";
+
+        List<long[]> buckets = new ArrayList<>();
+        long pages = 0;
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = prepare(conn, sql, sessionId);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                long count = rs.getLong(2);
+                buckets.add(new long[]{rs.getInt(1), count});
+                pages += count;
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Failed to retrieve latency statistics", e);
+        }
+        if (pages == 0) {
+            return new LatencyStats(0, 0, 0, 0, 0, 0);
+        }
+
+        long[] ranks = {(long) Math.ceil(pages * 0.50), (long) Math.ceil(pages * 0.90),
+                (long) Math.ceil(pages * 0.95), (long) Math.ceil(pages * 0.99), pages};
+        long[] values = new long[ranks.length];
+        long cumulative = 0;
+        int next = 0;
+        for (long[] bucket : buckets) {
+            cumulative += bucket[1];
+            while (next < ranks.length && cumulative >= ranks[next]) {
+                values[next++] = StatsRollup.bucketUpperMs((int) bucket[0]);
+            }
+        }
+        return new LatencyStats(pages, values[0], values[1], values[2], values[3], values[4]);
+    }
+
+    private static String sessionFilter(String sessionId) {
+        return sessionId != null ? " WHERE session_id = ?" : "";
+    }
+
+    private static PreparedStatement prepare(Connection conn, String sql, String sessionId) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql);
+        if (sessionId != null) {
+            pstmt.setString(1, sessionId);
+        }
+        return pstmt;
+    }
+
     public record CrawlStatistics(
             int totalPages,
             int successCount,
             double averageSize,
             long totalTime
     ) {}
+
+    public record HostStats(
+            String host,
+            long pages,
+            long successes,
+            long errors,
+            long bytes,
+            double averageLoadTime,
+            long firstSeen,
+            long lastSeen
+    ) {}
+
+    public record StatusStats(
+            int statusCode,
+            long pages,
+            long bytes
+    ) {}
+
+    // Load-time percentiles in milliseconds
+    public record LatencyStats(
+            long pages,
+            long p50,
+            long p90,
+            long p95,
+            long p99,
+            long max
+    ) {}
+
+    // HTTP validators and SHA-256 of the body from a page's last fetch.
+    // parsedAt is when the current content was first parsed. links are the
+    // links extracted then, or null when the page was not parsed this time and
+    // the saved ones still apply.
+    public record PageValidators(
+            String url,
+            String etag,
+            String lastModified,
+            String contentHash,
+            String title,
+            long parsedAt,
+            Collection<String> links
+    ) {}
+
+    // Filters for streamResults; null fields are not applied, limit <= 0 means no limit
+    public record ResultQuery(
+            String sessionId,
+            long afterId,
+            int limit,
+            Integer statusCode,
+            String host,
+            Long fromTime,
+            Long toTime
+    ) {}
+
+    @FunctionalInterface
+    public interface RowHandler {
+        void accept(long id, CrawlResult result) throws IOException;
+    }
+
+    public record WriterStats(
+            int queueDepth,
+            long rowsWritten,
+            long rowsDropped,    // Lost to a batch that failed twice, or to a closed writer
+            long commits,
+            int lastBatchSize,
+            double averageRowsPerCommit
+    ) {}
 }
\ No newline at end of file
@@ -0,0 +1,196 @@
+package com.example.crawler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Server-Sent Events fan-out for the dashboard. A single broadcaster thread
+// reads what the crawl added to the result ring since its last tick, encodes
+// it once as an SSE frame and offers the same bytes to every client's bounded
+// queue. Crawl workers never touch the clients; a client whose queue is full
+// is disconnected and catches up from the ring when its browser reconnects
+// with Last-Event-ID. A new client's catch-up is taken under the broadcaster's
+// lock and ends where the next broadcast begins, so no frame it is offered
+// repeats or precedes what the catch-up sent.
+class EventHub {
+    private static final Logger LOGGER = Logger.getLogger(EventHub.class.getName());
+    static final long BATCH_WINDOW_MS = 250;
+    private static final long STATUS_INTERVAL_MS = 1000;
+    private static final long KEEPALIVE_MS = 15_000;
+    private static final int CLIENT_QUEUE_FRAMES = 64;
+    private static final byte[] KEEPALIVE = ": keepalive\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final CrawlerService crawlerService;
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService broadcaster;
+    private long cursor;
+    private long lastStatusAt = 0;
+
+    private static final class Client {
+        final BlockingQueue<byte[]> frames = new ArrayBlockingQueue<>(CLIENT_QUEUE_FRAMES);
+        // Results through here reached the client before it connected
+        final long resumedAfter;
+        volatile boolean overflowed = false;
+
+        Client(long resumedAfter) {
+            this.resumedAfter = resumedAfter;
+        }
+
+        // Never blocks the broadcaster; a full queue marks the client for disconnect
+        void offer(byte[] frame) {
+            if (!frames.offer(frame)) {
+                overflowed = true;
+            }
+        }
+    }
+
+    EventHub(CrawlerService crawlerService) {
+        this.crawlerService = crawlerService;
+        this.cursor = crawlerService.getLastResultSeq();
+        this.broadcaster = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "event-broadcaster");
+            t.setDaemon(true);
+            return t;
+        });
+        broadcaster.scheduleWithFixedDelay(this::broadcast, BATCH_WINDOW_MS, BATCH_WINDOW_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Where a reconnecting client resumes. Its Last-Event-ID is "<epoch>-<seq>"
+    // of the last results frame it got; an id from another process's
+    // numbering starts it over from the oldest result in the ring.
+    long resumeAfter(String lastEventId) {
+        int dash = lastEventId.indexOf('-');
+        long seq = Long.parseLong(lastEventId.substring(dash + 1).trim());
+        if (dash >= 0 && Long.parseLong(lastEventId.substring(0, dash).trim()) != crawlerService.getResultsEpoch()) {
+            return 0;
+        }
+        return validSince(seq);
+    }
+
+    // A sequence past the newest result can only come from an earlier process
+    long validSince(long seq) {
+        return seq > crawlerService.getLastResultSeq() ? 0 : seq;
+    }
+
+    int clientCount() {
+        return clients.size();
+    }
+
+    // Serves one client on the calling (Jetty) thread until it disconnects or
+    // falls too far behind. Results after afterSeq are sent first as catch-up.
+    void serve(OutputStream out, long afterSeq) throws IOException {
+        Client client = new Client(afterSeq);
+        ResultBuffer.Slice catchUp;
+        synchronized (this) {
+            catchUp = crawlerService.getResultsBetween(afterSeq, cursor);
+            clients.add(client);
+        }
+        try {
+            out.write(resultsFrame(catchUp));
+            out.write(statusFrame());
+            out.flush();
+
+            while (!client.overflowed) {
+                byte[] frame = client.frames.poll(KEEPALIVE_MS, TimeUnit.MILLISECONDS);
+                out.write(frame != null ? frame : KEEPALIVE);
+                // Send everything already queued before flushing once
+                while ((frame = client.frames.poll()) != null) {
+                    out.write(frame);
+                }
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            clients.remove(client);
+        }
+    }
+
+    void close() {
+        broadcaster.shutdownNow();
+    }
+
+    private synchronized void broadcast() {
+        try {
+            if (clients.isEmpty()) {
+                // Nobody is listening; new clients catch up from the ring themselves
+                cursor = crawlerService.getLastResultSeq();
+                return;
+            }
+
+            ResultBuffer.Slice slice = crawlerService.getResultsSince(cursor);
+            if (!slice.entries().isEmpty() || slice.truncated()) {
+                cursor = slice.lastSeq();
+                byte[] frame = resultsFrame(slice);
+                for (Client client : clients) {
+                    // A client that resumed past the cursor already has this batch
+                    if (slice.lastSeq() > client.resumedAfter) {
+                        client.offer(frame);
+                    }
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastStatusAt >= STATUS_INTERVAL_MS) {
+                lastStatusAt = now;
+                fanOut(statusFrame());
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to broadcast crawl events", e);
+        }
+    }
+
+    private void fanOut(byte[] frame) {
+        for (Client client : clients) {
+            client.offer(frame);
+        }
+    }
+
+    // id carries the epoch and last sequence number so a reconnecting browser
+    // resumes after it, or from the start if the server has restarted since
+    private static byte[] resultsFrame(ResultBuffer.Slice slice) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream(256 * (slice.entries().size() + 1));
+        try (JsonStreamWriter json = new JsonStreamWriter(data, false)) {
+            json.beginObject();
+            json.name("results");
+            json.beginArray();
+            for (ResultBuffer.Entry entry : slice.entries()) {
+                JsonUtil.writeResult(json, "seq", entry.seq(), entry.result());
+            }
+            json.endArray();
+            json.name("lastSeq").value(slice.lastSeq());
+            json.name("truncated").value(slice.truncated());
+            json.name("epoch").value(slice.epoch());
+            json.endObject();
+        }
+        return frame("results", slice.epoch() + "-" + slice.lastSeq(), data.toString(StandardCharsets.UTF_8));
+    }
+
+    private byte[] statusFrame() {
+        return frame("status", null, JsonUtil.statusToJson(crawlerService.getStatus()));
+    }
+
+    private static byte[] frame(String event, String id, String data) {
+        StringBuilder frame = new StringBuilder(data.length() + 64);
+        if (id != null) {
+            frame.append("id: ").append(id).append('\n');
+        }
+        frame.append("event: ").append(event).append('\n');
+        // Multi-line payloads need one data: field per line
+        for (String line : data.split("\n", -1)) {
+            frame.append("data: ").append(line).append('\n');
+        }
+        frame.append('\n');
+        return frame.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
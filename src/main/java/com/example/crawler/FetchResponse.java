@@ -0,0 +1,72 @@
+package com.example.crawler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Status, headers and an unread body stream for one fetched URL
+public class FetchResponse implements Closeable {
+    static final int MAX_BODY_BYTES = 10_000_000; // 10MB max
+
+    private final int statusCode;
+    private final String url;
+    private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final InputStream body;
+
+    FetchResponse(int statusCode, String url, Map<String, List<String>> headers, InputStream body) {
+        this.statusCode = statusCode;
+        this.url = url;
+        this.headers.putAll(headers);
+        this.body = body;
+    }
+
+    public int statusCode() {
+        return statusCode;
+    }
+
+    // Final URL after redirects, used as the base for resolving links
+    public String url() {
+        return url;
+    }
+
+    public String header(String name) {
+        List<String> values = headers.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    public String contentType() {
+        return header("Content-Type");
+    }
+
+    // Charset parameter of the Content-Type header, or null to let the parser detect it
+    public String charset() {
+        String contentType = contentType();
+        if (contentType == null) return null;
+        int idx = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+        if (idx < 0) return null;
+        String charset = contentType.substring(idx + "charset=".length());
+        int end = charset.indexOf(';');
+        if (end >= 0) {
+            charset = charset.substring(0, end);
+        }
+        charset = charset.trim().replace("\"", "").replace("'", "");
+        return charset.isEmpty() ? null : charset;
+    }
+
+    public InputStream body() {
+        return body;
+    }
+
+    public byte[] bodyAsBytes() throws IOException {
+        return body.readNBytes(MAX_BODY_BYTES);
+    }
+
+    @Override
+    public void close() throws IOException {
+        body.close();
+    }
+}
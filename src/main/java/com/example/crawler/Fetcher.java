@@ -0,0 +1,46 @@
+package com.example.crawler;
+
+import java.io.IOException;
+import java.util.Map;
+
+// Performs the HTTP GET for a CrawlTask. Implementations own connection
+// handling; the task only reads the response and does the parsing.
+public interface Fetcher {
+    String BACKEND_JSOUP = "jsoup";
+    String BACKEND_HTTPCLIENT = "httpclient";
+
+    // Follows redirects; the response's url() is the final location
+    default FetchResponse fetch(String url) throws IOException {
+        return fetch(url, 0);
+    }
+
+    // Same, with a per-request timeout; timeoutMs <= 0 uses the crawl's timeout
+    default FetchResponse fetch(String url, int timeoutMs) throws IOException {
+        return fetch(url, timeoutMs, Map.of());
+    }
+
+    // Same, adding request headers such as If-None-Match for conditional revisits
+    FetchResponse fetch(String url, int timeoutMs, Map<String, String> headers) throws IOException;
+
+    FetcherStats stats();
+
+    default void close() {
+    }
+
+    static Fetcher create(CrawlRequest req) {
+        if (BACKEND_HTTPCLIENT.equals(req.fetcher())) {
+            return new HttpClientFetcher(req.userAgent(), req.timeout(), req.maxConnectionsPerHost());
+        }
+        return new JsoupFetcher(req.userAgent(), req.timeout());
+    }
+
+    // newConnections and handshake time are estimates for backends that do not
+    // expose connection events, see HttpClientFetcher
+    record FetcherStats(
+            String backend,
+            long requests,
+            long newConnections,
+            double connectionReuseRatio,
+            double averageHandshakeMs
+    ) {}
+}
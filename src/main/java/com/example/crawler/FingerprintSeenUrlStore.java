@@ -0,0 +1,136 @@
+package com.example.crawler;
+
+// Exact seen-set: 64-bit URL fingerprints in striped open-addressing tables of
+// primitive longs (8 bytes per slot, no per-entry objects)
+class FingerprintSeenUrlStore implements SeenUrlStore {
+    private static final int STRIPES = 64;
+    private static final long EMPTY = 0L;
+
+    private final Segment[] segments = new Segment[STRIPES];
+
+    private static final class Segment {
+        long[] table;
+        int size;
+
+        Segment(int capacity) {
+            table = new long[capacity];
+        }
+
+        synchronized boolean add(long fp) {
+            if (insert(table, fp)) {
+                size++;
+                if (size * 2 > table.length) {
+                    grow();
+                }
+                return true;
+            }
+            return false;
+        }
+
+        synchronized boolean contains(long fp) {
+            int mask = table.length - 1;
+            for (int i = slot(fp, mask); ; i = (i + 1) & mask) {
+                long existing = table[i];
+                if (existing == EMPTY) return false;
+                if (existing == fp) return true;
+            }
+        }
+
+        synchronized void clear(int capacity) {
+            table = new long[capacity];
+            size = 0;
+        }
+
+        private void grow() {
+            long[] bigger = new long[table.length * 2];
+            for (long fp : table) {
+                if (fp != EMPTY) {
+                    insert(bigger, fp);
+                }
+            }
+            table = bigger;
+        }
+
+        private static boolean insert(long[] table, long fp) {
+            int mask = table.length - 1;
+            for (int i = slot(fp, mask); ; i = (i + 1) & mask) {
+                long existing = table[i];
+                if (existing == fp) return false;
+                if (existing == EMPTY) {
+                    table[i] = fp;
+                    return true;
+                }
+            }
+        }
+
+        // The low bits pick the stripe, so probe with the high bits
+        private static int slot(long fp, int mask) {
+            return (int) (fp >>> 32) & mask;
+        }
+    }
+
+    FingerprintSeenUrlStore(long expectedUrls) {
+        int perSegment = initialCapacity(expectedUrls);
+        for (int i = 0; i < STRIPES; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    @Override
+    public boolean add(String url) {
+        long fp = fingerprintOf(url);
+        return segmentFor(fp).add(fp);
+    }
+
+    @Override
+    public boolean contains(String url) {
+        long fp = fingerprintOf(url);
+        return segmentFor(fp).contains(fp);
+    }
+
+    @Override
+    public long size() {
+        long total = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                total += segment.size;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear(16);
+        }
+    }
+
+    @Override
+    public MemoryReport memoryReport() {
+        long entries = 0;
+        long bytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                entries += segment.size;
+                bytes += (long) segment.table.length * Long.BYTES;
+            }
+        }
+        return new MemoryReport(MODE_EXACT, entries, bytes);
+    }
+
+    private Segment segmentFor(long fp) {
+        return segments[(int) (fp & (STRIPES - 1))];
+    }
+
+    // Zero marks an empty slot, so remap the (astronomically unlikely) zero fingerprint
+    private static long fingerprintOf(String url) {
+        long fp = SeenUrlStore.fingerprint(url);
+        return fp == EMPTY ? 1L : fp;
+    }
+
+    private static int initialCapacity(long expectedUrls) {
+        long perSegment = Math.max(8, expectedUrls * 2 / STRIPES);
+        return (int) Math.min(1 << 30, Long.highestOneBit(perSegment - 1) << 1);
+    }
+}
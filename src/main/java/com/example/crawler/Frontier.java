@@ -0,0 +1,486 @@
+package com.example.crawler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Crawl frontier with per-host politeness: each host has its own queue, hosts
+// wait in a min-heap by the earliest time they may be fetched again, and once
+// that time has come they move to a ready heap ordered by the FrontierOrder key
+// of their best task, so a task is only handed out once its host is eligible
+// and no worker has to sleep. Past memoryLimit queued tasks, new entries spill
+// to a FrontierLog on disk and are read back as the in-memory window drains;
+// the order applies within that window. With a HostController, a host is also
+// held back while it is backing off after throttling us or already has as many
+// fetches running as its concurrency limit allows, and its requests are spaced
+// by its robots.txt Crawl-delay when that exceeds the crawl's delay.
+//
+// Workers add tasks to a lock-free inbox and never wait for the frontier's
+// lock; the dispatcher, the only caller of take(), merges the inbox into the
+// heaps it owns before picking the next task.
+class Frontier {
+    private static final Logger LOGGER = Logger.getLogger(Frontier.class.getName());
+
+    private static final int IDLE = 0;     // no tasks, or parked at the host's concurrency limit
+    private static final int WAITING = 1;  // in `waiting` until nextFetchAt
+    private static final int READY = 2;    // in `ready`
+
+    private final long delayMs;
+    private final int memoryLimit;
+    private final FrontierLog log;
+    private final Function<FrontierEntry, CrawlTask> taskFactory;
+    private final HostController controller;
+    private final FrontierOrder order;
+    private final int maxPagesPerHost;
+
+    private final ConcurrentLinkedQueue<CrawlTask> inbox = new ConcurrentLinkedQueue<>();
+    // URLs linked to again while queued, for orders that count in-links
+    private final ConcurrentLinkedQueue<String> relinked = new ConcurrentLinkedQueue<>();
+    // Tasks in memory, the inbox included
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong spilled = new AtomicLong();
+    // Tasks ever queued per host, for maxPagesPerHost
+    private final ConcurrentHashMap<String, AtomicInteger> admitted = new ConcurrentHashMap<>();
+    // Set while the dispatcher waits, so that adders only take the lock to wake it
+    private volatile boolean idle = false;
+
+    // Guarded by this
+    private final Map<String, HostQueue> hosts = new HashMap<>();
+    private final PriorityQueue<HostQueue> waiting =
+            new PriorityQueue<>(Comparator.comparingLong(h -> h.nextFetchAt));
+    private final PriorityQueue<ReadyHost> ready = new PriorityQueue<>(
+            Comparator.comparingDouble(ReadyHost::key)
+                    .thenComparingLong(ReadyHost::nextFetchAt)
+                    .thenComparingLong(ReadyHost::seq));
+    private final Map<String, Queued> queuedByUrl;
+    private long sequence = 0;
+
+    private static final class Queued {
+        final CrawlTask task;
+        final long seq;
+        int inLinks = 1;
+        double key;
+        boolean taken;
+
+        Queued(CrawlTask task, long seq, double key) {
+            this.task = task;
+            this.seq = seq;
+            this.key = key;
+        }
+    }
+
+    // A heap entry for a queued task; a task whose key changed is pushed again
+    // and its older entries are skipped when they surface
+    private record Slot(double key, Queued queued) {
+        boolean isLive() {
+            return !queued.taken && key == queued.key;
+        }
+    }
+
+    // A ready host as of its version; entries for an older version are skipped
+    private record ReadyHost(double key, long nextFetchAt, long seq, HostQueue host, long version) {}
+
+    private static final class HostQueue {
+        final String host;
+        final PriorityQueue<Slot> tasks = new PriorityQueue<>(
+                Comparator.comparingDouble(Slot::key).thenComparingLong(s -> s.queued().seq));
+        int count = 0;
+        long nextFetchAt = 0;
+        int active = 0;
+        int state = IDLE;
+        long version = 0;
+        double readyKey;
+
+        HostQueue(String host) {
+            this.host = host;
+        }
+
+        Slot head() {
+            Slot slot;
+            while ((slot = tasks.peek()) != null && !slot.isLive()) {
+                tasks.poll();
+            }
+            return slot;
+        }
+    }
+
+    Frontier(long delayMs) {
+        this(delayMs, Integer.MAX_VALUE, null, null, null, FrontierOrder.FIFO, 0);
+    }
+
+    Frontier(long delayMs, int memoryLimit, FrontierLog log, Function<FrontierEntry, CrawlTask> taskFactory,
+             HostController controller, FrontierOrder order, int maxPagesPerHost) {
+        this.delayMs = Math.max(0, delayMs);
+        this.memoryLimit = Math.max(1, memoryLimit);
+        this.log = log;
+        this.taskFactory = taskFactory;
+        this.controller = controller;
+        this.order = order;
+        this.maxPagesPerHost = maxPagesPerHost;
+        this.queuedByUrl = order.usesInLinks() ? new HashMap<>() : null;
+    }
+
+    void add(CrawlTask task) {
+        if (log != null && size.get() >= memoryLimit) {
+            // An entry the log cannot hold stays in memory, still counted once
+            try {
+                if (log.append(task.toEntry())) {
+                    spilled.incrementAndGet();
+                    return;
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to spill frontier entry, keeping it in memory", e);
+            }
+        }
+        size.incrementAndGet();
+        inbox.add(task);
+        if (idle) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    // Counts a new task against its host's page cap; false once the host has had its share
+    boolean admit(String url) {
+        if (maxPagesPerHost <= 0) return true;
+        return admitted.computeIfAbsent(hostOf(url), h -> new AtomicInteger()).incrementAndGet() <= maxPagesPerHost;
+    }
+
+    // Another link to a URL that is already known; raises its priority if it is still queued
+    void linkedAgain(String url) {
+        if (queuedByUrl != null) {
+            relinked.add(url);
+        }
+    }
+
+    // Blocks until some host is eligible, then hands out its best task and
+    // pushes that host's next slot back by the politeness delay
+    synchronized CrawlTask take() throws InterruptedException {
+        while (true) {
+            mergeInbox();
+            if (spilled.get() > 0 && size.get() <= memoryLimit / 2) {
+                refill();
+            }
+            promoteDueHosts();
+
+            ReadyHost best = pollReady();
+            if (best == null) {
+                idle = true;
+                if (inbox.isEmpty()) {
+                    HostQueue next = waiting.peek();
+                    if (next == null) {
+                        wait();
+                    } else {
+                        wait(Math.max(1, next.nextFetchAt - System.currentTimeMillis()));
+                    }
+                }
+                idle = false;
+                continue;
+            }
+
+            HostQueue head = best.host();
+            long now = System.currentTimeMillis();
+            if (controller != null) {
+                long backoff = controller.readyAt(head.host);
+                if (backoff > now) {
+                    // Throttled since it became ready: wait out the backoff
+                    head.nextFetchAt = backoff;
+                    schedule(head);
+                    continue;
+                }
+                if (head.active >= controller.concurrencyLimit(head.host)) {
+                    // Parked until one of the host's fetches finishes, see taskDone
+                    head.state = IDLE;
+                    continue;
+                }
+            }
+
+            Slot slot = head.head();
+            head.tasks.poll();
+            Queued queued = slot.queued();
+            queued.taken = true;
+            if (queuedByUrl != null) {
+                queuedByUrl.remove(queued.task.url());
+            }
+            head.count--;
+            size.decrementAndGet();
+            head.active++;
+            head.nextFetchAt = now + delayFor(head.host);
+            if (head.count > 0) {
+                schedule(head);
+            } else {
+                head.state = IDLE;
+                removeIfIdle(head);
+            }
+            return queued.task;
+        }
+    }
+
+    // Called once a task handed out by take() has finished, freeing a slot for its host
+    synchronized void taskDone(CrawlTask task) {
+        HostQueue queue = hosts.get(hostOf(task.url()));
+        if (queue == null || queue.active == 0) return;
+        queue.active--;
+        if (queue.state == IDLE && queue.count > 0) {
+            schedule(queue);
+            notifyAll();
+        } else {
+            removeIfIdle(queue);
+        }
+    }
+
+    private void mergeInbox() {
+        CrawlTask task;
+        while ((task = inbox.poll()) != null) {
+            enqueue(task);
+        }
+        String url;
+        while ((url = relinked.poll()) != null) {
+            relink(url);
+        }
+    }
+
+    private void enqueue(CrawlTask task) {
+        HostQueue queue = hosts.computeIfAbsent(hostOf(task.url()), HostQueue::new);
+        Queued queued = new Queued(task, sequence++, order.key(task, 1));
+        queue.tasks.add(new Slot(queued.key, queued));
+        queue.count++;
+        if (queuedByUrl != null) {
+            queuedByUrl.put(task.url(), queued);
+        }
+        if (queue.state == IDLE) {
+            schedule(queue);
+        } else if (queue.state == READY && queued.key < queue.readyKey) {
+            markReady(queue);
+        }
+    }
+
+    private void relink(String url) {
+        Queued queued = queuedByUrl.get(url);
+        if (queued == null) return;
+        queued.inLinks++;
+        double key = order.key(queued.task, queued.inLinks);
+        if (key == queued.key) return;
+        queued.key = key;
+        HostQueue queue = hosts.get(hostOf(url));
+        if (queue.tasks.size() > 2 * queue.count + 64) {
+            // Mostly superseded entries: rebuild from the live ones
+            List<Slot> live = new ArrayList<>(queue.count);
+            for (Slot slot : queue.tasks) {
+                if (slot.isLive()) live.add(slot);
+            }
+            queue.tasks.clear();
+            queue.tasks.addAll(live);
+        }
+        queue.tasks.add(new Slot(key, queued));
+        if (queue.state == READY && key < queue.readyKey) {
+            markReady(queue);
+        }
+    }
+
+    private void schedule(HostQueue queue) {
+        if (queue.state == WAITING) {
+            waiting.remove(queue);
+        }
+        queue.state = WAITING;
+        queue.version++;
+        waiting.add(queue);
+    }
+
+    // Moves every host whose politeness delay and backoff have passed to the ready heap
+    private void promoteDueHosts() {
+        long now = System.currentTimeMillis();
+        HostQueue head;
+        while ((head = waiting.peek()) != null) {
+            if (controller != null) {
+                long backoff = controller.readyAt(head.host);
+                if (backoff > head.nextFetchAt) {
+                    // Re-order the host by the end of its backoff
+                    waiting.poll();
+                    head.nextFetchAt = backoff;
+                    waiting.add(head);
+                    continue;
+                }
+            }
+            if (head.nextFetchAt > now) break;
+            waiting.poll();
+            markReady(head);
+        }
+    }
+
+    private void markReady(HostQueue queue) {
+        Slot slot = queue.head();
+        queue.version++;
+        if (slot == null) {
+            queue.state = IDLE;
+            removeIfIdle(queue);
+            return;
+        }
+        queue.state = READY;
+        queue.readyKey = slot.key();
+        ready.add(new ReadyHost(slot.key(), queue.nextFetchAt, slot.queued().seq, queue, queue.version));
+    }
+
+    private ReadyHost pollReady() {
+        ReadyHost entry;
+        while ((entry = ready.poll()) != null) {
+            HostQueue queue = entry.host();
+            if (queue.state == READY && queue.version == entry.version()) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private long delayFor(String host) {
+        return controller != null ? Math.max(delayMs, controller.crawlDelay(host)) : delayMs;
+    }
+
+    // Without a politeness delay there is no per-host timing worth keeping
+    private void removeIfIdle(HostQueue queue) {
+        if (queue.count == 0 && queue.active == 0 && delayFor(queue.host) == 0) {
+            hosts.remove(queue.host);
+        }
+    }
+
+    private void refill() {
+        try {
+            List<FrontierEntry> batch = log.readBatch(memoryLimit - size.get());
+            for (FrontierEntry entry : batch) {
+                enqueue(taskFactory.apply(entry));
+            }
+            size.addAndGet(batch.size());
+            if (batch.isEmpty()) {
+                spilled.set(0);
+            } else {
+                spilled.addAndGet(-batch.size());
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to read spilled frontier entries, dropping " + spilled, e);
+            spilled.set(0);
+        }
+    }
+
+    long size() {
+        return size.get() + Math.max(0, spilled.get());
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // Entries currently held in memory; spilled entries are already on disk
+    synchronized List<FrontierEntry> snapshot() {
+        mergeInbox();
+        List<FrontierEntry> entries = new ArrayList<>(size.get());
+        for (HostQueue queue : hosts.values()) {
+            for (Slot slot : queue.tasks) {
+                if (slot.isLive()) {
+                    entries.add(slot.queued().task.toEntry());
+                }
+            }
+        }
+        return entries;
+    }
+
+    // Takes every queued in-memory task of the matching hosts, e.g. hosts that
+    // now belong to another cluster node. Spilled entries are not scanned.
+    synchronized List<CrawlTask> removeHosts(Predicate<String> match) {
+        mergeInbox();
+        List<CrawlTask> removed = new ArrayList<>();
+        Iterator<HostQueue> it = hosts.values().iterator();
+        while (it.hasNext()) {
+            HostQueue queue = it.next();
+            if (queue.count == 0 || !match.test(queue.host)) continue;
+            for (Slot slot : queue.tasks) {
+                if (!slot.isLive()) continue;
+                slot.queued().taken = true;
+                removed.add(slot.queued().task);
+                if (queuedByUrl != null) {
+                    queuedByUrl.remove(slot.queued().task.url());
+                }
+            }
+            size.addAndGet(-queue.count);
+            queue.tasks.clear();
+            queue.count = 0;
+            if (queue.state == WAITING) {
+                waiting.remove(queue);
+            }
+            queue.state = IDLE;
+            queue.version++;
+            if (queue.active == 0) {
+                it.remove();
+            }
+        }
+        return removed;
+    }
+
+    // Hands every spilled entry to the consumer and forgets it
+    synchronized void drainSpilled(Consumer<FrontierEntry> consumer) {
+        try {
+            while (spilled.get() > 0) {
+                List<FrontierEntry> batch = log.readBatch(memoryLimit);
+                if (batch.isEmpty()) break;
+                batch.forEach(consumer);
+                spilled.addAndGet(-batch.size());
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to read spilled frontier entries, dropping " + spilled, e);
+        }
+        spilled.set(0);
+    }
+
+    synchronized void clear() {
+        inbox.clear();
+        relinked.clear();
+        hosts.clear();
+        waiting.clear();
+        ready.clear();
+        if (queuedByUrl != null) {
+            queuedByUrl.clear();
+        }
+        admitted.clear();
+        size.set(0);
+        spilled.set(0);
+        if (log != null) {
+            log.clear();
+        }
+    }
+
+    static String hostOf(String url) {
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = start;
+        while (end < url.length()) {
+            char c = url.charAt(end);
+            if (c == '/' || c == '?' || c == '#') break;
+            end++;
+        }
+        int at = url.lastIndexOf('@', end - 1);
+        if (at >= start) {
+            start = at + 1;
+        }
+        int colon = url.lastIndexOf(':', end - 1);
+        int bracket = url.indexOf(']', colon);
+        if (colon >= start && (bracket < 0 || bracket >= end)) {
+            end = colon;
+        }
+        return url.substring(start, end).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,4 @@
+package com.example.crawler;
+
+// What the frontier persists for a pending task; everything else comes from the crawl's CrawlRequest
+record FrontierEntry(String url, int depth, String referrer) {}
@@ -0,0 +1,262 @@
+package com.example.crawler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+// On-disk side of the crawl frontier. Entries that do not fit in memory are
+// appended to numbered segment files and read back oldest-first; a checkpoint
+// of the in-memory window plus the crawl's settings lets a paused (or
+// interrupted) crawl be resumed after a JVM restart.
+class FrontierLog {
+    private static final Logger LOGGER = Logger.getLogger(FrontierLog.class.getName());
+    private static final String SEGMENT_PREFIX = "spill-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "checkpoint.seg";
+    private static final String STATE_FILE = "crawl.json";
+    private static final long MAX_SEGMENT_BYTES = 64L * 1024 * 1024;
+    private static final int MAX_UTF_CHARS = 65535 / 3;
+
+    private final Path dir;
+    private final Deque<Path> segments = new ArrayDeque<>();
+    private int nextSegment;
+    private DataOutputStream writer;
+    private Path writerPath;
+    private long writerBytes;
+    private DataInputStream reader;
+    private Path readerPath;
+
+    // Settings and progress counters needed to pick a crawl back up
+    record SavedCrawl(CrawlRequest request, int totalTasks, int completedTasks, long startTime) {}
+
+    FrontierLog(Path dir) {
+        this.dir = dir;
+        this.nextSegment = highestSegmentNumber() + 1;
+    }
+
+    static Path defaultDirectory() {
+        return Paths.get("crawl_frontier");
+    }
+
+    // False when the entry is too long for a record; the caller keeps it instead
+    synchronized boolean append(FrontierEntry entry) throws IOException {
+        if (!fits(entry)) {
+            return false;
+        }
+        if (writer == null || writerBytes >= MAX_SEGMENT_BYTES) {
+            rotateWriter();
+        }
+        int before = writer.size();
+        writeEntry(writer, entry);
+        writerBytes += writer.size() - before;
+        return true;
+    }
+
+    // Reads up to max spilled entries, oldest segment first
+    synchronized List<FrontierEntry> readBatch(int max) throws IOException {
+        List<FrontierEntry> batch = new ArrayList<>(Math.min(max, 4096));
+        while (batch.size() < max) {
+            if (reader == null) {
+                Path next = segments.peekFirst();
+                if (next == null) break;
+                if (next.equals(writerPath)) {
+                    closeWriter();
+                }
+                reader = open(next);
+                readerPath = next;
+            }
+
+            FrontierEntry entry = readEntry(reader);
+            if (entry != null) {
+                batch.add(entry);
+                continue;
+            }
+
+            reader.close();
+            reader = null;
+            segments.pollFirst();
+            Files.deleteIfExists(readerPath);
+        }
+        return batch;
+    }
+
+    synchronized boolean hasSpilled() {
+        return !segments.isEmpty();
+    }
+
+    synchronized void writeCheckpoint(SavedCrawl state, Collection<FrontierEntry> window) throws IOException {
+        Files.createDirectories(dir);
+        if (writer != null) {
+            writer.flush();
+        }
+
+        Path checkpointTmp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(checkpointTmp)))) {
+            for (FrontierEntry entry : window) {
+                if (fits(entry)) {
+                    writeEntry(out, entry);
+                } else {
+                    // A resumed crawl counts what it reads back, so this only loses the page
+                    LOGGER.warning("Leaving a frontier entry with an over-long URL out of the checkpoint");
+                }
+            }
+        }
+        Files.move(checkpointTmp, dir.resolve(CHECKPOINT_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Path stateTmp = dir.resolve(STATE_FILE + ".tmp");
+        Files.writeString(stateTmp, JsonUtil.toJson(state), StandardCharsets.UTF_8);
+        Files.move(stateTmp, dir.resolve(STATE_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Drops every segment and checkpoint, e.g. when a crawl is terminated or finishes
+    synchronized void clear() {
+        closeReader();
+        closeWriter();
+        segments.clear();
+        if (!Files.isDirectory(dir)) return;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to clear frontier directory " + dir, e);
+        }
+    }
+
+    synchronized void close() {
+        closeReader();
+        closeWriter();
+    }
+
+    static SavedCrawl loadState(Path dir) {
+        Path state = dir.resolve(STATE_FILE);
+        if (!Files.exists(state)) return null;
+        try {
+            return JsonUtil.fromJson(Files.readString(state, StandardCharsets.UTF_8), SavedCrawl.class);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Ignoring unreadable saved crawl state " + state, e);
+            return null;
+        }
+    }
+
+    // Streams every entry left on disk by a previous process (checkpoint and
+    // segments) to the consumer, then deletes those files
+    static void drainSaved(Path dir, Consumer<FrontierEntry> consumer) throws IOException {
+        if (!Files.isDirectory(dir)) return;
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(dir)) {
+            listing.filter(p -> isSegment(p) || p.getFileName().toString().equals(CHECKPOINT_FILE))
+                    .sorted()
+                    .forEach(files::add);
+        }
+        for (Path file : files) {
+            try (DataInputStream in = open(file)) {
+                FrontierEntry entry;
+                while ((entry = readEntry(in)) != null) {
+                    consumer.accept(entry);
+                }
+            }
+        }
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(dir.resolve(STATE_FILE));
+    }
+
+    private void rotateWriter() throws IOException {
+        closeWriter();
+        Files.createDirectories(dir);
+        writerPath = dir.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, nextSegment++, SEGMENT_SUFFIX));
+        writer = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(writerPath), 64 * 1024));
+        writerBytes = 0;
+        segments.addLast(writerPath);
+    }
+
+    private void closeWriter() {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to close frontier segment " + writerPath, e);
+        }
+        writer = null;
+        writerPath = null;
+    }
+
+    private void closeReader() {
+        if (reader == null) return;
+        try {
+            reader.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to close frontier segment " + readerPath, e);
+        }
+        reader = null;
+        readerPath = null;
+    }
+
+    private int highestSegmentNumber() {
+        if (!Files.isDirectory(dir)) return 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(FrontierLog::isSegment)
+                    .map(p -> p.getFileName().toString())
+                    .mapToInt(n -> Integer.parseInt(n.substring(SEGMENT_PREFIX.length(), n.length() - SEGMENT_SUFFIX.length())))
+                    .max()
+                    .orElse(0);
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static boolean isSegment(Path p) {
+        String name = p.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static DataInputStream open(Path file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+    }
+
+    // writeUTF is limited to 65535 encoded bytes (at most 3 per char)
+    private static boolean fits(FrontierEntry entry) {
+        return entry.url().length() <= MAX_UTF_CHARS
+                && (entry.referrer() == null || entry.referrer().length() <= MAX_UTF_CHARS);
+    }
+
+    // Record layout: url (modified UTF-8), depth (short), referrer (modified UTF-8)
+    private static void writeEntry(DataOutputStream out, FrontierEntry entry) throws IOException {
+        out.writeUTF(entry.url());
+        out.writeShort(entry.depth());
+        out.writeUTF(entry.referrer() == null ? "" : entry.referrer());
+    }
+
+    private static FrontierEntry readEntry(DataInputStream in) throws IOException {
+        try {
+            String url = in.readUTF();
+            int depth = in.readShort();
+            String referrer = in.readUTF();
+            return new FrontierEntry(url, depth, referrer);
+        } catch (EOFException e) {
+            // End of segment, or a record cut short by a crash
+            return null;
+        }
+    }
+}
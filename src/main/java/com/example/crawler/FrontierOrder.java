@@ -0,0 +1,33 @@
+package com.example.crawler;
+
+// Which queued task the frontier hands out next. Among the hosts that may be
+// fetched now, the one whose best task has the lowest key goes first, and a
+// host's tasks leave in key order; equal keys fall back to the least recently
+// fetched host and then to the order the tasks were queued in.
+public interface FrontierOrder {
+    String MODE_FIFO = "fifo";
+    String MODE_BFS = "bfs";
+    String MODE_BEST_FIRST = "best-first";
+
+    // Queued order within a host, hosts taken in turn
+    FrontierOrder FIFO = (task, inLinks) -> 0;
+    // Shallowest task first
+    FrontierOrder BFS = (task, inLinks) -> task.depth();
+
+    // inLinks counts the links to the task's URL found while it was queued,
+    // including the one that queued it
+    double key(CrawlTask task, int inLinks);
+
+    // Whether keys change as more links to a queued URL are found
+    default boolean usesInLinks() {
+        return false;
+    }
+
+    static FrontierOrder create(CrawlRequest req) {
+        return switch (req.frontierOrder()) {
+            case MODE_BFS -> BFS;
+            case MODE_BEST_FIRST -> new BestFirstOrder(req.urlWeights());
+            default -> FIFO;
+        };
+    }
+}
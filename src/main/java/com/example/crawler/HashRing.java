@@ -0,0 +1,66 @@
+package com.example.crawler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// Consistent hashing of hosts onto cluster members. Each member is placed at
+// VNODES points on a 64-bit ring and a host belongs to the member at the first
+// point at or after the host's hash, so adding or removing one of N members
+// only moves the hosts on the arcs next to its points, about 1/N of them.
+// Immutable: a membership change builds a new ring and swaps it in, and
+// lookups (a hash plus a binary search) take no lock.
+final class HashRing {
+    static final int VNODES = 160;
+
+    private final long epoch;
+    private final List<ClusterMember> members;
+    private final long[] points;
+    private final ClusterMember[] owners;
+
+    private record Point(long hash, ClusterMember member) {}
+
+    HashRing(long epoch, List<ClusterMember> members) {
+        this.epoch = epoch;
+        this.members = List.copyOf(members);
+        List<Point> ring = new ArrayList<>(members.size() * VNODES);
+        for (ClusterMember member : members) {
+            for (int i = 0; i < VNODES; i++) {
+                ring.add(new Point(SeenUrlStore.fingerprint(member.id() + "#" + i), member));
+            }
+        }
+        ring.sort(Comparator.comparingLong(Point::hash));
+        points = new long[ring.size()];
+        owners = new ClusterMember[ring.size()];
+        for (int i = 0; i < ring.size(); i++) {
+            points[i] = ring.get(i).hash();
+            owners[i] = ring.get(i).member();
+        }
+    }
+
+    // Null when the ring has no members
+    ClusterMember ownerOf(String host) {
+        if (points.length == 0) return null;
+        int i = Arrays.binarySearch(points, SeenUrlStore.fingerprint(host));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return owners[i == points.length ? 0 : i];
+    }
+
+    ClusterMember member(String id) {
+        for (ClusterMember member : members) {
+            if (member.id().equals(id)) return member;
+        }
+        return null;
+    }
+
+    long epoch() {
+        return epoch;
+    }
+
+    List<ClusterMember> members() {
+        return members;
+    }
+}
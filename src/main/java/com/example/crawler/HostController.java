@@ -0,0 +1,232 @@
+package com.example.crawler;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Per-host fetch limits learned from the crawl itself. Every fetch reports its
+// load time and outcome; from those each host gets
+//  - a concurrency limit tuned by AIMD: +1/limit per good response, halved
+//    (at most once per typical response time) on errors, throttling or a
+//    latency spike, between 1 and maxConnectionsPerHost
+//  - a timeout of a few times its observed p99, capped by the crawl's timeout
+//  - a backoff after 429/503, honoring Retry-After when the server sends one
+//  - the minimum spacing between requests its robots.txt asks for (Crawl-delay)
+// In fixed mode only the backoff and Crawl-delay apply; concurrency and timeout
+// stay global.
+class HostController {
+    static final String MODE_ADAPTIVE = "adaptive";
+    static final String MODE_FIXED = "fixed";
+
+    private static final int WINDOW = 128;
+    private static final int MIN_SAMPLES = 20;
+    private static final int PERCENTILE_REFRESH = 16;
+    private static final double INITIAL_LIMIT = 2;
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final double LATENCY_SPIKE_FACTOR = 3;
+    private static final double TIMEOUT_P99_FACTOR = 3;
+    private static final int MIN_TIMEOUT_MS = 2000;
+    private static final double ERROR_EWMA_ALPHA = 0.05;
+    private static final long BASE_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 60_000;
+    private static final long MAX_RETRY_AFTER_MS = 10 * 60_000;
+
+    private final boolean adaptive;
+    private final int maxConcurrency;
+    private final int maxTimeoutMs;
+    private final ConcurrentHashMap<String, HostState> hosts = new ConcurrentHashMap<>();
+
+    record HostReport(
+            String host,
+            long requests,
+            int concurrencyLimit,
+            int timeoutMs,
+            long p50Ms,
+            long p99Ms,
+            double errorRate,
+            long backoffMs
+    ) {}
+
+    private final class HostState {
+        final String host;
+        final long[] samples = new long[WINDOW];
+        long requests = 0;
+        double limit = initialLimit();
+        long lastDecreaseAt = 0;
+        long p50 = 0;
+        long p99 = 0;
+        double errorRate = 0;
+        int consecutiveThrottles = 0;
+        volatile int timeoutMs = maxTimeoutMs;
+        volatile int concurrencyLimit = (int) limit;
+        volatile long readyAt = 0;
+        volatile long crawlDelayMs = 0;
+
+        HostState(String host) {
+            this.host = host;
+        }
+
+        synchronized void record(long elapsedMs, boolean failed) {
+            samples[(int) (requests % WINDOW)] = elapsedMs;
+            requests++;
+            errorRate += ERROR_EWMA_ALPHA * ((failed ? 1 : 0) - errorRate);
+            if (requests % PERCENTILE_REFRESH == 0 || requests == MIN_SAMPLES) {
+                refreshPercentiles();
+            }
+            if (!failed) {
+                consecutiveThrottles = 0;
+            }
+            if (!adaptive) return;
+
+            boolean warm = requests >= MIN_SAMPLES;
+            boolean spike = warm && p50 > 0 && elapsedMs > LATENCY_SPIKE_FACTOR * p50;
+            if (failed || spike) {
+                decrease();
+            } else {
+                limit = Math.min(maxConcurrency, limit + 1 / limit);
+            }
+            concurrencyLimit = (int) limit;
+            if (warm) {
+                timeoutMs = (int) Math.max(MIN_TIMEOUT_MS, Math.min(maxTimeoutMs, p99 * TIMEOUT_P99_FACTOR));
+            }
+        }
+
+        // One cut per response time, so a burst of concurrent failures halves once
+        void decrease() {
+            long now = System.currentTimeMillis();
+            if (now - lastDecreaseAt >= Math.max(100, p50)) {
+                limit = Math.max(1, limit * DECREASE_FACTOR);
+                lastDecreaseAt = now;
+            }
+        }
+
+        synchronized long throttle(String retryAfter) {
+            long delay = parseRetryAfter(retryAfter);
+            if (delay < 0) {
+                delay = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(consecutiveThrottles, 16));
+            }
+            consecutiveThrottles++;
+            readyAt = Math.max(readyAt, System.currentTimeMillis() + delay);
+            return delay;
+        }
+
+        private void refreshPercentiles() {
+            int n = (int) Math.min(requests, WINDOW);
+            long[] sorted = Arrays.copyOf(samples, n);
+            Arrays.sort(sorted);
+            p50 = sorted[(int) Math.ceil(0.50 * n) - 1];
+            p99 = sorted[(int) Math.ceil(0.99 * n) - 1];
+        }
+
+        synchronized HostReport report() {
+            return new HostReport(host, requests, concurrencyLimit, timeoutMs, p50, p99, errorRate,
+                    Math.max(0, readyAt - System.currentTimeMillis()));
+        }
+    }
+
+    HostController(boolean adaptive, int maxConcurrency, int maxTimeoutMs) {
+        this.adaptive = adaptive;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.maxTimeoutMs = maxTimeoutMs;
+    }
+
+    static HostController create(CrawlRequest req) {
+        if (req.isAdaptiveHostControl()) {
+            return new HostController(true, req.maxConnectionsPerHost(), req.timeout());
+        }
+        return new HostController(false, Integer.MAX_VALUE, req.timeout());
+    }
+
+    int concurrencyLimit(String host) {
+        HostState state = hosts.get(host);
+        return state != null ? state.concurrencyLimit : (int) initialLimit();
+    }
+
+    private double initialLimit() {
+        return adaptive ? Math.min(INITIAL_LIMIT, maxConcurrency) : maxConcurrency;
+    }
+
+    int timeoutFor(String host) {
+        HostState state = hosts.get(host);
+        return state != null ? state.timeoutMs : maxTimeoutMs;
+    }
+
+    // Earliest time the host may be fetched again after throttling us
+    long readyAt(String host) {
+        HostState state = hosts.get(host);
+        return state != null ? state.readyAt : 0;
+    }
+
+    // Crawl-delay from the host's robots.txt, 0 when it sets none
+    long crawlDelay(String host) {
+        HostState state = hosts.get(host);
+        return state != null ? state.crawlDelayMs : 0;
+    }
+
+    void setCrawlDelay(String host, long delayMs) {
+        HostState state = hosts.get(host);
+        if (state == null && delayMs <= 0) return;
+        state(host).crawlDelayMs = Math.max(0, delayMs);
+    }
+
+    void recordSuccess(String host, long loadTimeMs) {
+        state(host).record(loadTimeMs, false);
+    }
+
+    // Server errors, timeouts and connection failures
+    void recordFailure(String host, long elapsedMs) {
+        state(host).record(elapsedMs, true);
+    }
+
+    // 429/503: counts as a failure and pushes the host back; returns the delay in ms
+    long recordThrottle(String host, long elapsedMs, String retryAfter) {
+        HostState state = state(host);
+        state.record(elapsedMs, true);
+        return state.throttle(retryAfter);
+    }
+
+    // Pushes the host back without recording a fetch, e.g. while its
+    // robots.txt cannot be read; returns the delay in ms
+    long backOff(String host) {
+        return state(host).throttle(null);
+    }
+
+    // Busiest hosts first
+    List<HostReport> report(int limit) {
+        List<HostReport> reports = new ArrayList<>(hosts.size());
+        for (HostState state : hosts.values()) {
+            reports.add(state.report());
+        }
+        reports.sort(Comparator.comparingLong(HostReport::requests).reversed());
+        return reports.size() > limit ? new ArrayList<>(reports.subList(0, limit)) : reports;
+    }
+
+    private HostState state(String host) {
+        return hosts.computeIfAbsent(host, HostState::new);
+    }
+
+    // Retry-After is either delta-seconds or an HTTP-date; -1 when absent or unparseable
+    static long parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) return -1;
+        String trimmed = value.trim();
+        try {
+            long seconds = Long.parseLong(trimmed);
+            return seconds < 0 ? -1 : Math.min(MAX_RETRY_AFTER_MS / 1000, seconds) * 1000;
+        } catch (NumberFormatException e) {
+            // Not delta-seconds, try the date form
+        }
+        try {
+            Instant at = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            long delay = at.toEpochMilli() - System.currentTimeMillis();
+            return Math.max(0, Math.min(MAX_RETRY_AFTER_MS, delay));
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
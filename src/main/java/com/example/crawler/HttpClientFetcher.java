@@ -0,0 +1,261 @@
+package com.example.crawler;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fetches through one shared java.net.http.HttpClient: HTTP/2 where the server
+// supports it (one multiplexed connection per host), otherwise HTTP/1.1 with
+// keep-alive pooling. A per-host semaphore caps concurrent requests, which also
+// caps the pool size per host.
+//
+// HttpClient does not report connection events, so connection use is inferred:
+// a request is counted as opening a connection when it is the first HTTP/2
+// request to a host, or when more HTTP/1.1 requests are in flight to the host
+// than it has ever had before (no idle pooled connection can be available).
+// Handshake time is the extra time-to-headers of those requests over the
+// host's average for requests that reused a connection.
+//
+// HttpRequest.timeout only bounds the wait for headers. The timeout covers the
+// whole request, as it does for Jsoup: a body still being read when it runs
+// out is closed from a timer thread, which fails the read and frees the
+// host's permit even if the server stalls mid-body.
+class HttpClientFetcher implements Fetcher {
+    private static final double EWMA_ALPHA = 0.2;
+    private static final ScheduledExecutorService DEADLINES = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "fetch-deadlines");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final HttpClient client;
+    private final String userAgent;
+    private final Duration timeout;
+    private final int maxConnectionsPerHost;
+    private final ConcurrentHashMap<String, HostState> hosts = new ConcurrentHashMap<>();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder newConnections = new LongAdder();
+    private final LongAdder handshakeNanos = new LongAdder();
+    private final LongAdder handshakeSamples = new LongAdder();
+
+    private static final class HostState {
+        final Semaphore permits;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger connections = new AtomicInteger();
+        final AtomicBoolean http2Connected = new AtomicBoolean();
+        volatile double warmNanos = -1;
+
+        HostState(int maxConnections) {
+            this.permits = new Semaphore(maxConnections);
+        }
+    }
+
+    HttpClientFetcher(String userAgent, int timeoutMs, int maxConnectionsPerHost) {
+        this.userAgent = userAgent;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.maxConnectionsPerHost = Math.max(1, maxConnectionsPerHost);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    @Override
+    public FetchResponse fetch(String url, int timeoutMs, Map<String, String> headers) throws IOException {
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid URL: " + url, e);
+        }
+        Duration requestTimeout = timeoutMs > 0 ? Duration.ofMillis(timeoutMs) : timeout;
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .header("User-Agent", userAgent)
+                .GET();
+        headers.forEach(builder::header);
+        HttpRequest request = builder.build();
+
+        HostState host = hosts.computeIfAbsent(uri.getScheme() + "://" + uri.getRawAuthority(),
+                k -> new HostState(maxConnectionsPerHost));
+        try {
+            host.permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a connection to " + uri.getHost());
+        }
+
+        int active = host.inFlight.incrementAndGet();
+        HttpResponse<InputStream> response;
+        long start = System.nanoTime();
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            release(host);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted fetching " + url);
+        } catch (IOException | RuntimeException e) {
+            release(host);
+            throw e;
+        }
+        recordConnectionUse(host, response.version(), active, System.nanoTime() - start);
+
+        PermitReleasingStream body = new PermitReleasingStream(response.body(), host,
+                start + requestTimeout.toNanos(), url);
+        return new FetchResponse(
+                response.statusCode(),
+                response.uri().toString(),
+                response.headers().map(),
+                body
+        );
+    }
+
+    private void recordConnectionUse(HostState host, HttpClient.Version version, int active, long headerNanos) {
+        requests.increment();
+        boolean opened;
+        if (version == HttpClient.Version.HTTP_2) {
+            opened = host.http2Connected.compareAndSet(false, true);
+        } else {
+            int known = host.connections.get();
+            opened = active > known && host.connections.compareAndSet(known, active);
+        }
+
+        if (opened) {
+            newConnections.increment();
+            double warm = host.warmNanos;
+            if (warm >= 0) {
+                long handshake = Math.max(0, headerNanos - (long) warm);
+                handshakeNanos.add(handshake);
+                handshakeSamples.increment();
+                Metrics.CONNECT.recordNanos(handshake);
+            }
+        } else {
+            double warm = host.warmNanos;
+            host.warmNanos = warm < 0 ? headerNanos : warm + EWMA_ALPHA * (headerNanos - warm);
+        }
+    }
+
+    private static void release(HostState host) {
+        host.inFlight.decrementAndGet();
+        host.permits.release();
+    }
+
+    @Override
+    public FetcherStats stats() {
+        long count = requests.sum();
+        long opened = newConnections.sum();
+        long samples = handshakeSamples.sum();
+        return new FetcherStats(
+                BACKEND_HTTPCLIENT,
+                count,
+                opened,
+                count == 0 ? 0 : 1.0 - (double) opened / count,
+                samples == 0 ? 0 : handshakeNanos.sum() / 1_000_000.0 / samples
+        );
+    }
+
+    // Caps the body at the crawler's max size, fails reads once the request's
+    // deadline has passed, and gives the host's connection permit back once
+    // the task is done with the body or the deadline closes it
+    private static final class PermitReleasingStream extends FilterInputStream {
+        private final HostState host;
+        private final long deadlineNanos;
+        private final String url;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private final ScheduledFuture<?> expiry;
+        private volatile boolean expired;
+        private long remaining = FetchResponse.MAX_BODY_BYTES;
+
+        PermitReleasingStream(InputStream in, HostState host, long deadlineNanos, String url) {
+            super(in);
+            this.host = host;
+            this.deadlineNanos = deadlineNanos;
+            this.url = url;
+            this.expiry = DEADLINES.schedule(this::expire, deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            checkDeadline();
+            int b = readOrExpire(() -> super.read());
+            if (b != -1) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            checkDeadline();
+            int n = readOrExpire(() -> super.read(b, off, (int) Math.min(len, remaining)));
+            if (n > 0) remaining -= n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            expiry.cancel(false);
+            try {
+                super.close();
+            } finally {
+                releaseOnce();
+            }
+        }
+
+        private interface Read {
+            int read() throws IOException;
+        }
+
+        // A read the timer cut short reports the timeout rather than "closed"
+        private int readOrExpire(Read read) throws IOException {
+            try {
+                return read.read();
+            } catch (IOException e) {
+                checkDeadline();
+                throw e;
+            }
+        }
+
+        private void checkDeadline() throws SocketTimeoutException {
+            if (expired || System.nanoTime() - deadlineNanos > 0) {
+                throw new SocketTimeoutException("Timed out reading the body of " + url);
+            }
+        }
+
+        private void expire() {
+            expired = true;
+            try {
+                in.close();
+            } catch (IOException e) {
+                // The reader fails either way
+            } finally {
+                releaseOnce();
+            }
+        }
+
+        private void releaseOnce() {
+            if (released.compareAndSet(false, true)) {
+                release(host);
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.crawler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Writes JSON as UTF-8 straight into an OutputStream through a buffer that is
+// reused by the next writer on the same thread, without reflection or an
+// intermediate String. Compact unless pretty, which indents like Gson's
+// pretty printing. close() flushes and closes the stream.
+final class JsonStreamWriter implements Closeable {
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final ThreadLocal<byte[]> SPARE_BUFFER = new ThreadLocal<>();
+
+    private final OutputStream out;
+    private final boolean pretty;
+    private byte[] buf;
+    private int pos;
+    // Per open container: whether anything has been written into it yet
+    private boolean[] nonEmpty = new boolean[16];
+    private int depth;
+    private boolean afterName;
+
+    JsonStreamWriter(OutputStream out, boolean pretty) {
+        this.out = out;
+        this.pretty = pretty;
+        byte[] spare = SPARE_BUFFER.get();
+        if (spare != null) {
+            SPARE_BUFFER.set(null);
+            buf = spare;
+        } else {
+            buf = new byte[BUFFER_SIZE];
+        }
+    }
+
+    JsonStreamWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    JsonStreamWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    JsonStreamWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    JsonStreamWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    JsonStreamWriter name(String name) throws IOException {
+        beforeValue();
+        writeString(name);
+        writeByte(':');
+        if (pretty) {
+            writeByte(' ');
+        }
+        afterName = true;
+        return this;
+    }
+
+    JsonStreamWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    JsonStreamWriter value(long value) throws IOException {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    // Same text as Gson; NaN and infinities, which JSON cannot hold, become null
+    JsonStreamWriter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return nullValue();
+        }
+        beforeValue();
+        writeAscii(Double.toString(value));
+        return this;
+    }
+
+    JsonStreamWriter value(boolean value) throws IOException {
+        beforeValue();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    JsonStreamWriter nullValue() throws IOException {
+        beforeValue();
+        writeAscii("null");
+        return this;
+    }
+
+    // A raw byte between values, e.g. the newline of NDJSON
+    JsonStreamWriter separator(char c) throws IOException {
+        writeByte(c);
+        return this;
+    }
+
+    void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buf == null) return;
+        try {
+            drain();
+            out.close();
+        } finally {
+            SPARE_BUFFER.set(buf);
+            buf = null;
+        }
+    }
+
+    private JsonStreamWriter open(char bracket) throws IOException {
+        beforeValue();
+        writeByte(bracket);
+        if (depth == nonEmpty.length) {
+            nonEmpty = Arrays.copyOf(nonEmpty, depth * 2);
+        }
+        nonEmpty[depth++] = false;
+        return this;
+    }
+
+    private JsonStreamWriter close(char bracket) throws IOException {
+        boolean hadContent = nonEmpty[--depth];
+        if (pretty && hadContent) {
+            newline();
+        }
+        writeByte(bracket);
+        return this;
+    }
+
+    // The comma and, when pretty, the line break in front of the next value or name
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth == 0) return;
+        if (nonEmpty[depth - 1]) {
+            writeByte(',');
+        }
+        nonEmpty[depth - 1] = true;
+        if (pretty) {
+            newline();
+        }
+    }
+
+    private void newline() throws IOException {
+        ensure(1 + 2 * depth);
+        buf[pos++] = '\n';
+        for (int i = 0; i < depth; i++) {
+            buf[pos++] = ' ';
+            buf[pos++] = ' ';
+        }
+    }
+
+    // Quoted and escaped like Gson's JsonWriter: quotes, backslashes, control
+    // characters and the JavaScript line separators
+    private void writeString(String s) throws IOException {
+        writeByte('"');
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    if (pos == buf.length) drain();
+                    buf[pos++] = (byte) c;
+                } else {
+                    writeEscape(c);
+                }
+            } else if (c < 0x800) {
+                ensure(2);
+                buf[pos++] = (byte) (0xC0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (c == '\u2028' || c == '\u2029') {
+                writeEscape(c);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                ensure(4);
+                buf[pos++] = (byte) (0xF0 | (cp >> 18));
+                buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired, as String.getBytes would replace it
+                writeByte('?');
+            } else {
+                ensure(3);
+                buf[pos++] = (byte) (0xE0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        writeByte('"');
+    }
+
+    private void writeEscape(char c) throws IOException {
+        ensure(6);
+        buf[pos++] = '\\';
+        switch (c) {
+            case '"' -> buf[pos++] = '"';
+            case '\\' -> buf[pos++] = '\\';
+            case '\n' -> buf[pos++] = 'n';
+            case '\r' -> buf[pos++] = 'r';
+            case '\t' -> buf[pos++] = 't';
+            case '\b' -> buf[pos++] = 'b';
+            case '\f' -> buf[pos++] = 'f';
+            default -> {
+                buf[pos++] = 'u';
+                buf[pos++] = HEX[(c >> 12) & 0xF];
+                buf[pos++] = HEX[(c >> 8) & 0xF];
+                buf[pos++] = HEX[(c >> 4) & 0xF];
+                buf[pos++] = HEX[c & 0xF];
+            }
+        }
+    }
+
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        ensure(20);
+        if (value < 0) {
+            buf[pos++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int end = pos + digits;
+        for (int i = end - 1; i >= pos; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        pos = end;
+    }
+
+    private void writeAscii(String s) throws IOException {
+        ensure(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            buf[pos++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void writeByte(char c) throws IOException {
+        if (pos == buf.length) drain();
+        buf[pos++] = (byte) c;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (pos + bytes > buf.length) {
+            drain();
+            if (bytes > buf.length) {
+                buf = new byte[Math.max(bytes, buf.length * 2)];
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+}
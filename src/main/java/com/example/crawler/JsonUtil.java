@@ -2,16 +2,29 @@ package com.example.crawler;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
-// Utility class for JSON serialization and deserialization
+// Utility class for JSON serialization and deserialization. Responses are
+// compact; indentation is opt-in (the API's ?pretty flag). Results, status and
+// statistics have hand-written writers for JsonStreamWriter, everything else
+// goes through Gson.
 public class JsonUtil {
-    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private static final Gson gson = new Gson();
+    private static final Gson prettyGson = new GsonBuilder().setPrettyPrinting().create();
 
     public static String toJson(Object obj) {
         return gson.toJson(obj);
     }
 
+    public static String toJson(Object obj, boolean pretty) {
+        return pretty ? prettyGson.toJson(obj) : gson.toJson(obj);
+    }
+
     public static <T> T fromJson(String json, Class<T> classOfT) {
         return gson.fromJson(json, classOfT);
     }
@@ -20,11 +33,78 @@ public class JsonUtil {
         return fromJson(json, CrawlRequest.class);
     }
 
-    public static String crawlResultsToJson(List<CrawlResult> results) {
-        return toJson(results);
+    public static String statusToJson(Status status) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (JsonStreamWriter json = new JsonStreamWriter(bytes, false)) {
+            writeStatus(json, status);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
     }
 
-    public static String statusToJson(Status status) {
-        return toJson(status);
+    static void writeResults(JsonStreamWriter out, List<CrawlResult> results) throws IOException {
+        out.beginArray();
+        for (CrawlResult result : results) {
+            writeResult(out, result);
+        }
+        out.endArray();
+    }
+
+    // Field names and order match the Gson form of the record; nulls are omitted
+    static void writeResult(JsonStreamWriter out, CrawlResult result) throws IOException {
+        out.beginObject();
+        writeResultFields(out, result);
+        out.endObject();
+    }
+
+    // Same, led by the database id
+    static void writeResult(JsonStreamWriter out, long id, CrawlResult result) throws IOException {
+        writeResult(out, "id", id, result);
+    }
+
+    // Same, with the key field named by the caller (e.g. the in-memory sequence number)
+    static void writeResult(JsonStreamWriter out, String idName, long id, CrawlResult result) throws IOException {
+        out.beginObject();
+        out.name(idName).value(id);
+        writeResultFields(out, result);
+        out.endObject();
+    }
+
+    private static void writeResultFields(JsonStreamWriter out, CrawlResult result) throws IOException {
+        out.name("url").value(result.url());
+        out.name("statusCode").value(result.statusCode());
+        out.name("contentSize").value(result.contentSize());
+        writeOptional(out, "referrer", result.referrer());
+        writeOptional(out, "contentType", result.contentType());
+        writeOptional(out, "title", result.title());
+        out.name("loadTime").value(result.loadTime());
+        out.name("timestamp").value(result.timestamp());
+    }
+
+    static void writeStatus(JsonStreamWriter out, Status status) throws IOException {
+        out.beginObject();
+        out.name("running").value(status.running());
+        out.name("paused").value(status.paused());
+        out.name("totalTasks").value(status.totalTasks());
+        out.name("completedTasks").value(status.completedTasks());
+        out.name("duration").value(status.duration());
+        out.name("duplicateLinks").value(status.duplicateLinks());
+        out.endObject();
+    }
+
+    static void writeStatistics(JsonStreamWriter out, DatabaseManager.CrawlStatistics stats) throws IOException {
+        out.beginObject();
+        out.name("totalPages").value(stats.totalPages());
+        out.name("successCount").value(stats.successCount());
+        out.name("averageSize").value(stats.averageSize());
+        out.name("totalTime").value(stats.totalTime());
+        out.endObject();
+    }
+
+    private static void writeOptional(JsonStreamWriter out, String name, String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
     }
-}
\ No newline at end of file
+}
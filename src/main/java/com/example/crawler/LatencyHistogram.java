@@ -0,0 +1,71 @@
+package com.example.crawler;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+// Log-linear latency histogram in the HDR style: each power of two of
+// microseconds is split into two buckets, so any recorded value is within 50%
+// of its bucket bound, from 64us up to ~134s (anything slower lands in +Inf).
+// Recording is a couple of bit operations and striped LongAdder increments,
+// so worker threads never block each other.
+class LatencyHistogram {
+    private static final int MIN_SHIFT = 6;   // first bound: 2^6 us
+    private static final int MAX_SHIFT = 27;  // last bound: 2^27 us
+    private static final int BUCKETS = 1 + 2 * (MAX_SHIFT - MIN_SHIFT) + 1;
+
+    private final String stage;
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder sumMicros = new LongAdder();
+
+    LatencyHistogram(String stage) {
+        this.stage = stage;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts[bucketOf(micros)].increment();
+        sumMicros.add(micros);
+    }
+
+    // Nanos since the given System.nanoTime() reading; returns now for chaining stages
+    long recordSince(long startNanos) {
+        long now = System.nanoTime();
+        recordNanos(now - startNanos);
+        return now;
+    }
+
+    private static int bucketOf(long micros) {
+        if (micros < (1L << MIN_SHIFT)) return 0;
+        int shift = 63 - Long.numberOfLeadingZeros(micros);
+        if (shift >= MAX_SHIFT) return BUCKETS - 1;
+        int half = (int) (micros >>> (shift - 1)) & 1;
+        return 1 + 2 * (shift - MIN_SHIFT) + half;
+    }
+
+    // Upper bound of a bucket in microseconds; the last bucket is unbounded
+    private static long upperBoundMicros(int bucket) {
+        if (bucket == 0) return 1L << MIN_SHIFT;
+        int shift = MIN_SHIFT + (bucket - 1) / 2;
+        return (bucket - 1) % 2 == 0 ? (3L << shift) / 2 : 1L << (shift + 1);
+    }
+
+    // Appends the cumulative _bucket series plus _sum and _count for this stage
+    void writePrometheus(StringBuilder out, String metric) {
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += counts[i].sum();
+            String le = i == BUCKETS - 1
+                    ? "+Inf"
+                    : String.format(Locale.ROOT, "%.6f", upperBoundMicros(i) / 1e6);
+            out.append(metric).append("_bucket{stage=\"").append(stage).append("\",le=\"").append(le)
+                    .append("\"} ").append(cumulative).append('\n');
+        }
+        out.append(metric).append("_sum{stage=\"").append(stage).append("\"} ")
+                .append(String.format(Locale.ROOT, "%.6f", sumMicros.sum() / 1e6)).append('\n');
+        out.append(metric).append("_count{stage=\"").append(stage).append("\"} ")
+                .append(cumulative).append('\n');
+    }
+}
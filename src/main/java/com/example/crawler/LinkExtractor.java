@@ -0,0 +1,358 @@
+package com.example.crawler;
+
+import org.jsoup.parser.Parser;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Single-pass HTML scanner that pulls the <title> text and a[href] links out of
+// a response stream without building a DOM. Links are resolved against the
+// page URL, or against the first <base href> if the page declares one.
+// The body is decoded the way Jsoup decodes it for the DOM path: a byte order
+// mark wins, then the response's charset, then the first <meta charset> or
+// http-equiv Content-Type in the first SNIFF_BYTES, then UTF-8.
+public class LinkExtractor {
+    private static final int MAX_TITLE_CHARS = 1024;
+    // Jsoup looks for a <meta> charset in the same prefix
+    private static final int SNIFF_BYTES = 5 * 1024;
+    private static final Pattern CONTENT_TYPE_CHARSET =
+            Pattern.compile("(?i)\\bcharset=\\s*[\"']?([^\\s,;\"']*)");
+
+    private final Reader in;
+    private final char[] buf = new char[8192];
+    private int pos = 0;
+    private int limit = 0;
+
+    private final boolean collectLinks;
+    private URL base;
+    private boolean baseSeen = false;
+    private String title = null;
+    // Charset named by the first <meta> that names one
+    private String metaCharset = null;
+    private final Set<String> links = new LinkedHashSet<>();
+
+    public record Extraction(String title, Set<String> links) {}
+
+    private LinkExtractor(Reader in, String pageUrl, boolean collectLinks) {
+        this.in = in;
+        this.collectLinks = collectLinks;
+        try {
+            this.base = new URL(pageUrl);
+        } catch (MalformedURLException e) {
+            this.base = null;
+        }
+    }
+
+    public static Extraction extract(InputStream body, String charset, String pageUrl, boolean collectLinks)
+            throws IOException {
+        BufferedInputStream in = new BufferedInputStream(body, SNIFF_BYTES);
+        in.mark(SNIFF_BYTES);
+        byte[] head = in.readNBytes(SNIFF_BYTES);
+        in.reset();
+        Reader reader = new InputStreamReader(in, detectCharset(in, head, charset));
+        LinkExtractor extractor = new LinkExtractor(reader, pageUrl, collectLinks);
+        extractor.scan();
+        return new Extraction(extractor.title, extractor.links);
+    }
+
+    // Skips a UTF-8 byte order mark; the UTF-16 and UTF-32 decoders drop theirs
+    private static Charset detectCharset(InputStream in, byte[] head, String charset) throws IOException {
+        if (startsWith(head, 0x00, 0x00, 0xFE, 0xFF) || startsWith(head, 0xFF, 0xFE, 0x00, 0x00)) {
+            return Charset.forName("UTF-32");
+        }
+        if (startsWith(head, 0xFE, 0xFF) || startsWith(head, 0xFF, 0xFE)) {
+            return StandardCharsets.UTF_16;
+        }
+        if (startsWith(head, 0xEF, 0xBB, 0xBF)) {
+            in.skipNBytes(3);
+            return StandardCharsets.UTF_8;
+        }
+        if (charset == null) {
+            // Markup is ASCII in every charset a page can declare this way
+            LinkExtractor sniffer = new LinkExtractor(
+                    new InputStreamReader(new ByteArrayInputStream(head), StandardCharsets.ISO_8859_1), null, false);
+            sniffer.scan();
+            charset = sniffer.metaCharset;
+        }
+        return charsetOrDefault(charset);
+    }
+
+    private static boolean startsWith(byte[] bytes, int... prefix) {
+        if (bytes.length < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if ((bytes[i] & 0xFF) != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    private static Charset charsetOrDefault(String charset) {
+        if (charset != null) {
+            try {
+                return Charset.forName(charset.strip());
+            } catch (IllegalArgumentException e) {
+                // Unknown or malformed charset label, fall through
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private void scan() throws IOException {
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '<') {
+                readMarkup();
+            }
+        }
+    }
+
+    private void readMarkup() throws IOException {
+        int c = read();
+        if (c == '!') {
+            if (peek() == '-') {
+                read();
+                if (peek() == '-') {
+                    read();
+                    skipPast("-->");
+                    return;
+                }
+            }
+            skipPast(">");
+        } else if (c == '?') {
+            skipPast(">");
+        } else if (c == '/') {
+            skipPast(">");
+        } else if (isLetter(c)) {
+            readStartTag(c);
+        }
+    }
+
+    private void readStartTag(int first) throws IOException {
+        String name = readName(first);
+        boolean isAnchor = name.equals("a");
+        boolean isBase = name.equals("base");
+        boolean isMeta = name.equals("meta") && metaCharset == null;
+        String href = null;
+        String charset = null;
+        String httpEquiv = null;
+        String content = null;
+
+        int c;
+        while ((c = read()) != -1 && c != '>') {
+            if (isWhitespace(c) || c == '/') {
+                continue;
+            }
+            String attr = readAttributeName(c);
+            c = skipWhitespace();
+            String value = null;
+            if (c == '=') {
+                value = readAttributeValue();
+            } else if (c != -1) {
+                unread();
+            }
+            if (value != null && attr.equals("href") && href == null) {
+                href = value;
+            } else if (value != null && isMeta) {
+                switch (attr) {
+                    case "charset" -> charset = charset == null ? value : charset;
+                    case "http-equiv" -> httpEquiv = httpEquiv == null ? value : httpEquiv;
+                    case "content" -> content = content == null ? value : content;
+                    default -> {
+                    }
+                }
+            }
+        }
+        if (isMeta) {
+            metaCharset = metaCharset(httpEquiv, content, charset);
+        }
+
+        if (isBase && href != null && !baseSeen) {
+            baseSeen = true;
+            URL declared = resolve(href);
+            if (declared != null) {
+                base = declared;
+            }
+        } else if (isAnchor && href != null && collectLinks) {
+            URL link = resolve(href);
+            if (link != null) {
+                links.add(link.toExternalForm());
+            }
+        } else if (name.equals("title") && title == null) {
+            title = normalizeWhitespace(unescape(readRawText("title", MAX_TITLE_CHARS)));
+        } else if (name.equals("script") || name.equals("style") || name.equals("textarea")) {
+            readRawText(name, 0);
+        }
+    }
+
+    // Same precedence as Jsoup: a Content-Type's charset before a charset attribute
+    private static String metaCharset(String httpEquiv, String content, String charset) {
+        if ("content-type".equalsIgnoreCase(httpEquiv) && content != null) {
+            Matcher m = CONTENT_TYPE_CHARSET.matcher(content);
+            if (m.find() && !m.group(1).isEmpty()) {
+                return m.group(1);
+            }
+        }
+        return charset == null || charset.isBlank() ? null : charset;
+    }
+
+    // Consumes text up to the matching close tag, keeping at most maxChars of it
+    private String readRawText(String tag, int maxChars) throws IOException {
+        StringBuilder text = new StringBuilder();
+        String closing = "</" + tag;
+        int matched = 0;
+        int c;
+        while ((c = read()) != -1) {
+            if (Character.toLowerCase(c) == closing.charAt(matched)) {
+                matched++;
+                if (matched == closing.length()) {
+                    skipPast(">");
+                    break;
+                }
+                continue;
+            }
+            if (matched > 0 && text.length() < maxChars) {
+                text.append(closing, 0, Math.min(matched, maxChars - text.length()));
+            }
+            matched = Character.toLowerCase(c) == '<' ? 1 : 0;
+            if (matched == 0 && text.length() < maxChars) {
+                text.append((char) c);
+            }
+        }
+        return text.toString();
+    }
+
+    private String readName(int first) throws IOException {
+        StringBuilder name = new StringBuilder();
+        name.append(Character.toLowerCase((char) first));
+        int c;
+        while ((c = read()) != -1) {
+            if (isWhitespace(c) || c == '>' || c == '/') {
+                unread();
+                break;
+            }
+            name.append(Character.toLowerCase((char) c));
+        }
+        return name.toString();
+    }
+
+    private String readAttributeName(int first) throws IOException {
+        StringBuilder name = new StringBuilder();
+        name.append(Character.toLowerCase((char) first));
+        int c;
+        while ((c = read()) != -1) {
+            if (isWhitespace(c) || c == '=' || c == '>' || c == '/') {
+                unread();
+                break;
+            }
+            name.append(Character.toLowerCase((char) c));
+        }
+        return name.toString();
+    }
+
+    private String readAttributeValue() throws IOException {
+        int c = skipWhitespace();
+        if (c == -1) return null;
+        StringBuilder value = new StringBuilder();
+        if (c == '"' || c == '\'') {
+            int quote = c;
+            while ((c = read()) != -1 && c != quote) {
+                value.append((char) c);
+            }
+        } else if (c == '>') {
+            unread();
+        } else {
+            value.append((char) c);
+            while ((c = read()) != -1) {
+                if (isWhitespace(c) || c == '>') {
+                    unread();
+                    break;
+                }
+                value.append((char) c);
+            }
+        }
+        return unescape(value.toString());
+    }
+
+    private URL resolve(String href) {
+        String trimmed = href.strip();
+        if (base == null) {
+            return null;
+        }
+        try {
+            return new URL(base, trimmed);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    private void skipPast(String terminator) throws IOException {
+        int matched = 0;
+        int c;
+        while ((c = read()) != -1) {
+            if (c == terminator.charAt(matched)) {
+                matched++;
+                if (matched == terminator.length()) return;
+            } else {
+                matched = c == terminator.charAt(0) ? 1 : 0;
+            }
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c != -1 && isWhitespace(c));
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit) {
+            limit = in.read(buf, 0, buf.length);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buf[pos++];
+    }
+
+    private int peek() throws IOException {
+        int c = read();
+        if (c != -1) unread();
+        return c;
+    }
+
+    // Only ever steps back over the character just returned by read()
+    private void unread() {
+        pos--;
+    }
+
+    private static String unescape(String s) {
+        return s.indexOf('&') >= 0 ? Parser.unescapeEntities(s, true) : s;
+    }
+
+    private static String normalizeWhitespace(String s) {
+        return s.strip().replaceAll("\\s+", " ");
+    }
+
+    private static boolean isLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+}
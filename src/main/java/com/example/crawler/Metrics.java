@@ -0,0 +1,123 @@
+package com.example.crawler;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+
+// Process-wide crawl instrumentation. Hot paths only bump histograms and
+// LongAdders; everything else (gauges, rates) is computed when /api/metrics is
+// scraped and rendered in the Prometheus text format.
+final class Metrics {
+    static final String STAGE_METRIC = "crawler_stage_duration_seconds";
+
+    // DNS and TCP/TLS setup are not observable separately through Jsoup or
+    // HttpClient: ttfb covers them plus server time. connect only holds the
+    // HttpClient fetcher's inferred handshake times for new connections.
+    static final LatencyHistogram CONNECT = new LatencyHistogram("connect");
+    static final LatencyHistogram TTFB = new LatencyHistogram("ttfb");
+    static final LatencyHistogram DOWNLOAD = new LatencyHistogram("download");
+    static final LatencyHistogram PARSE = new LatencyHistogram("parse");
+    // In stream extraction mode the body is scanned as it downloads, so this
+    // stage includes the download
+    static final LatencyHistogram EXTRACT = new LatencyHistogram("extract");
+    static final LatencyHistogram DB_QUEUE_WAIT = new LatencyHistogram("db_queue_wait");
+    static final LatencyHistogram DB_INSERT = new LatencyHistogram("db_insert");
+    static final LatencyHistogram ARCHIVE_QUEUE_WAIT = new LatencyHistogram("archive_queue_wait");
+    static final LatencyHistogram ARCHIVE_WRITE = new LatencyHistogram("archive_write");
+
+    private static final LatencyHistogram[] STAGES = {
+            CONNECT, TTFB, DOWNLOAD, PARSE, EXTRACT, DB_QUEUE_WAIT, DB_INSERT, ARCHIVE_QUEUE_WAIT, ARCHIVE_WRITE
+    };
+
+    static final LongAdder PAGES = new LongAdder();
+    static final LongAdder BYTES = new LongAdder();
+    static final LongAdder FETCH_ERRORS = new LongAdder();
+    static final LongAdder ROBOTS_BLOCKED = new LongAdder();
+    static final LongAdder UNCHANGED = new LongAdder();
+    static final LongAdder HOST_CAP_SKIPPED = new LongAdder();
+
+    // Previous scrape, for the per-second rates
+    private static long lastScrapeNanos = System.nanoTime();
+    private static long lastPages = 0;
+    private static long lastBytes = 0;
+
+    private Metrics() {
+    }
+
+    static synchronized String scrape(CrawlSessions sessions) {
+        long now = System.nanoTime();
+        long pages = PAGES.sum();
+        long bytes = BYTES.sum();
+        double seconds = Math.max(1e-3, (now - lastScrapeNanos) / 1e9);
+        double pagesPerSecond = (pages - lastPages) / seconds;
+        double bytesPerSecond = (bytes - lastBytes) / seconds;
+        lastScrapeNanos = now;
+        lastPages = pages;
+        lastBytes = bytes;
+
+        StringBuilder out = new StringBuilder(16 * 1024);
+        header(out, STAGE_METRIC, "histogram", "Time spent in each stage of fetching and storing a page");
+        for (LatencyHistogram stage : STAGES) {
+            stage.writePrometheus(out, STAGE_METRIC);
+        }
+
+        counter(out, "crawler_pages_total", "Results recorded, including errors", pages);
+        counter(out, "crawler_bytes_total", "Response body bytes read", bytes);
+        counter(out, "crawler_fetch_errors_total", "Fetches that failed without an HTTP response", FETCH_ERRORS.sum());
+        counter(out, "crawler_robots_blocked_total", "URLs skipped because robots.txt disallows them", ROBOTS_BLOCKED.sum());
+        counter(out, "crawler_pages_unchanged_total", "Revisited pages answered 304 or with an unchanged body", UNCHANGED.sum());
+        counter(out, "crawler_host_cap_skipped_total", "New URLs dropped because their host reached maxPagesPerHost", HOST_CAP_SKIPPED.sum());
+        gauge(out, "crawler_pages_per_second", "Pages per second since the previous scrape", pagesPerSecond);
+        gauge(out, "crawler_bytes_per_second", "Body bytes per second since the previous scrape", bytesPerSecond);
+
+        List<CrawlerService> all = sessions.all();
+        sessionGauge(out, all, "crawler_running", "1 while a crawl is running", s -> s.getStatus().running() ? 1 : 0);
+        sessionGauge(out, all, "crawler_tasks_total", "Tasks created in the current crawl", s -> s.getStatus().totalTasks());
+        sessionGauge(out, all, "crawler_tasks_completed", "Tasks completed in the current crawl", s -> s.getStatus().completedTasks());
+        sessionGauge(out, all, "crawler_frontier_size", "Tasks waiting in the frontier, including spilled ones", CrawlerService::getFrontierSize);
+        sessionGauge(out, all, "crawler_executor_queue_depth", "Tasks queued inside the worker executor", CrawlerService::getExecutorQueueDepth);
+        sessionGauge(out, all, "crawler_active_threads", "Workers currently running a task", CrawlerService::getActiveWorkers);
+        gauge(out, "crawler_fetch_budget", "Concurrent fetches allowed across all sessions", sessions.fetchBudget());
+        gauge(out, "crawler_fetch_budget_available", "Fetch permits not in use", sessions.availableFetchPermits());
+
+        DatabaseManager.WriterStats writer = sessions.db().getWriterStats();
+        gauge(out, "crawler_db_queue_depth", "Results waiting for the database writer", writer.queueDepth());
+        counter(out, "crawler_db_rows_written_total", "Rows committed to SQLite", writer.rowsWritten());
+        counter(out, "crawler_db_rows_dropped_total", "Results that never reached SQLite", writer.rowsDropped());
+        counter(out, "crawler_db_commits_total", "Write transactions committed", writer.commits());
+
+        PageArchive.ArchiveStats archive = sessions.archive().stats();
+        gauge(out, "crawler_archive_queue_depth", "Pages waiting for the archive writer", archive.queueDepth());
+        counter(out, "crawler_archive_records_total", "Pages appended to the archive", archive.records());
+        counter(out, "crawler_archive_raw_bytes_total", "Body bytes of archived pages", archive.rawBytes());
+        counter(out, "crawler_archive_stored_bytes_total", "Archived body bytes after compression", archive.storedBytes());
+        gauge(out, "crawler_archive_disk_bytes", "Size of the archive's segment files", archive.diskBytes());
+        return out.toString();
+    }
+
+    // One series per crawl session, labeled session="<id>"
+    private static void sessionGauge(StringBuilder out, List<CrawlerService> sessions, String name, String help,
+                                     ToDoubleFunction<CrawlerService> value) {
+        header(out, name, "gauge", help);
+        for (CrawlerService session : sessions) {
+            out.append(name).append("{session=\"").append(session.getSessionId()).append("\"} ")
+                    .append(String.format(Locale.ROOT, "%.3f", value.applyAsDouble(session))).append('\n');
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, "counter", help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, double value) {
+        header(out, name, "gauge", help);
+        out.append(name).append(' ').append(String.format(Locale.ROOT, "%.3f", value)).append('\n');
+    }
+}
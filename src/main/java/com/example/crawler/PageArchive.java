@@ -0,0 +1,551 @@
+package com.example.crawler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Raw bodies of fetched pages, kept so that pages can be reprocessed without
+// crawling them again. Captures are appended to numbered segment files, each
+// body deflated on its own so any record can be read alone. A capture is found
+// by URL fingerprint: the segment being written keeps its index in memory, and
+// a sealed segment gets a sorted fingerprint/offset file beside it that is
+// binary-searched in place. Both are read through memory mappings, so serving
+// a page inflates straight out of the page cache. Every record points at the
+// previous capture of its URL, which keeps older captures reachable.
+//
+// Fetch threads only queue a capture; one writer thread compresses whatever
+// has queued up and appends it with a single gathering write.
+final class PageArchive {
+    private static final Logger LOGGER = Logger.getLogger(PageArchive.class.getName());
+    private static final String SEGMENT_PREFIX = "pages-";
+    private static final String SEGMENT_SUFFIX = ".arc";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final long MAX_SEGMENT_BYTES = 256L * 1024 * 1024;
+    private static final int QUEUE_CAPACITY = 256;
+    private static final int MAX_BATCH = 128;
+
+    // Record layout: magic, record length (int), fingerprint, previous capture
+    // location, timestamp (long), status (int), codec (byte), body length
+    // (int), url and content type (short length + UTF-8), stored body, then a
+    // CRC32 of everything from the fingerprint on
+    private static final int MAGIC = 0x50475231; // "PGR1"
+    private static final int FIXED_HEADER = 4 + 4 + 8 + 8 + 8 + 4 + 1 + 4 + 2 + 2;
+    private static final byte CODEC_STORED = 0;
+    private static final byte CODEC_DEFLATE = 1;
+
+    // A page as it was fetched; the body stays in the mapped segment until written out
+    record Page(String url, int statusCode, String contentType, long timestamp, int size, long previous,
+                byte codec, ByteBuffer stored) {
+        void writeBody(OutputStream out) throws IOException {
+            byte[] buf = new byte[64 * 1024];
+            if (codec == CODEC_STORED) {
+                ByteBuffer body = stored.duplicate();
+                while (body.hasRemaining()) {
+                    int n = Math.min(buf.length, body.remaining());
+                    body.get(buf, 0, n);
+                    out.write(buf, 0, n);
+                }
+                return;
+            }
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(stored.duplicate());
+                while (!inflater.finished()) {
+                    int n = inflater.inflate(buf);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IOException("Truncated archive record for " + url);
+                    }
+                    out.write(buf, 0, n);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt archive record for " + url, e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    record ArchiveStats(int segments, long diskBytes, long records, long rawBytes, long storedBytes, int queueDepth) {}
+
+    private record Capture(String url, int statusCode, String contentType, long timestamp, byte[] body) {}
+
+    private static final class Segment {
+        final int number;
+        final Path path;
+        final FileChannel channel;
+        // Bytes of complete records; readers never look past it
+        volatile long size;
+        // Latest offset per fingerprint while the segment is written
+        final Map<Long, Integer> live = new ConcurrentHashMap<>();
+        // Sorted (fingerprint, offset) pairs once the segment is sealed
+        volatile LongBuffer index;
+        private MappedByteBuffer map;
+
+        Segment(int number, Path path, FileChannel channel, long size) {
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+            this.size = size;
+        }
+
+        // A mapping that covers at least `end` bytes, remapped as the segment grows
+        synchronized ByteBuffer mapped(long end) throws IOException {
+            if (map == null || map.capacity() < end) {
+                map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            return map;
+        }
+
+        // Offset of the fingerprint's latest record in this segment, or -1
+        int find(long fingerprint) {
+            Integer offset = live.get(fingerprint);
+            if (offset != null) return offset;
+            LongBuffer sorted = index;
+            if (sorted == null) return -1;
+            int lo = 0;
+            int hi = sorted.limit() / 2 - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                long key = sorted.get(2 * mid);
+                if (key < fingerprint) {
+                    lo = mid + 1;
+                } else if (key > fingerprint) {
+                    hi = mid - 1;
+                } else {
+                    return (int) sorted.get(2 * mid + 1);
+                }
+            }
+            return -1;
+        }
+    }
+
+    private final Path dir;
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+    // Newest first, so the first hit is the latest capture
+    private volatile List<Segment> searchOrder = List.of();
+    private volatile Segment active;
+    private final BlockingQueue<Capture> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread thread;
+    private final Object progressLock = new Object();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final CRC32 crc = new CRC32();
+    private volatile boolean closed = false;
+
+    PageArchive(Path dir) {
+        this.dir = dir;
+        open();
+        this.thread = new Thread(this::runLoop, "page-archive-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    static Path defaultDirectory() {
+        return Paths.get("crawl_archive");
+    }
+
+    // Queues the body for the writer; blocks while the queue is full
+    void append(String url, int statusCode, String contentType, long timestamp, byte[] body) {
+        if (closed) return;
+        enqueued.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            queue.put(new Capture(url, statusCode, contentType, timestamp, body));
+            Metrics.ARCHIVE_QUEUE_WAIT.recordSince(start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            markProcessed(1);
+        }
+    }
+
+    // The URL's latest capture taken at or before the timestamp, or null
+    Page find(String url, long atOrBefore) throws IOException {
+        long location = latest(SeenUrlStore.fingerprint(url));
+        while (location >= 0) {
+            Page page = read(location);
+            if (page == null) return null;
+            if (page.timestamp() <= atOrBefore && page.url().equals(url)) {
+                return page;
+            }
+            location = page.previous();
+        }
+        return null;
+    }
+
+    // Waits until every capture queued before this call has been written (or dropped)
+    void flush() {
+        long target = enqueued.get();
+        synchronized (progressLock) {
+            while (processed.get() < target && thread.isAlive()) {
+                try {
+                    progressLock.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    void close() {
+        flush();
+        // Not interrupted: that would close the segment channel mid-write
+        closed = true;
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Segment segment : segments.values()) {
+            try {
+                if (segment == active) {
+                    segment.channel.force(false);
+                }
+                segment.channel.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Failed to close archive segment " + segment.path, e);
+            }
+        }
+        deflater.end();
+    }
+
+    ArchiveStats stats() {
+        long disk = 0;
+        for (Segment segment : searchOrder) {
+            disk += segment.size;
+        }
+        return new ArchiveStats(searchOrder.size(), disk, records.get(), rawBytes.get(), storedBytes.get(),
+                queue.size());
+    }
+
+    private long latest(long fingerprint) {
+        for (Segment segment : searchOrder) {
+            int offset = segment.find(fingerprint);
+            if (offset >= 0) return location(segment.number, offset);
+        }
+        return -1;
+    }
+
+    private static long location(int segment, long offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    private Page read(long location) throws IOException {
+        Segment segment = segments.get((int) (location >>> 32));
+        if (segment == null) return null;
+        int offset = (int) location;
+        ByteBuffer buf = segment.mapped(offset + FIXED_HEADER);
+        if (buf.getInt(offset) != MAGIC) {
+            throw new IOException("No archive record at " + segment.path + ":" + offset);
+        }
+        int length = buf.getInt(offset + 4);
+        buf = segment.mapped(offset + (long) length);
+        ByteBuffer record = buf.slice(offset, length);
+        CRC32 check = new CRC32();
+        check.update(record.slice(8, length - 12));
+        if ((int) check.getValue() != record.getInt(length - 4)) {
+            throw new IOException("Corrupt archive record at " + segment.path + ":" + offset);
+        }
+        long previous = record.getLong(16);
+        long timestamp = record.getLong(24);
+        int status = record.getInt(32);
+        byte codec = record.get(36);
+        int size = record.getInt(37);
+        int pos = 41;
+        int urlLength = Short.toUnsignedInt(record.getShort(pos));
+        String url = string(record, pos + 2, urlLength);
+        pos += 2 + urlLength;
+        int typeLength = Short.toUnsignedInt(record.getShort(pos));
+        String contentType = typeLength == 0 ? null : string(record, pos + 2, typeLength);
+        pos += 2 + typeLength;
+        ByteBuffer stored = record.slice(pos, length - 4 - pos);
+        return new Page(url, status, contentType, timestamp, size, previous, codec, stored);
+    }
+
+    private static String string(ByteBuffer buf, int offset, int length) {
+        byte[] bytes = new byte[length];
+        buf.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void runLoop() {
+        List<Capture> batch = new ArrayList<>(MAX_BATCH);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Capture first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch, MAX_BATCH - batch.size());
+            long start = System.nanoTime();
+            try {
+                writeBatch(batch);
+                Metrics.ARCHIVE_WRITE.recordSince(start);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to archive " + batch.size() + " pages", e);
+            } finally {
+                markProcessed(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<Capture> batch) throws IOException {
+        List<ByteBuffer> pending = new ArrayList<>(batch.size());
+        // Fingerprint to offset of records in `pending`, published once written
+        Map<Long, Integer> written = new HashMap<>();
+        Segment segment = active;
+        long end = segment != null ? segment.size : 0;
+        for (Capture capture : batch) {
+            byte[] url = capture.url().getBytes(StandardCharsets.UTF_8);
+            byte[] type = capture.contentType() == null ? new byte[0]
+                    : capture.contentType().getBytes(StandardCharsets.UTF_8);
+            if (url.length > 0xFFFF || type.length > 0xFFFF) {
+                LOGGER.warning("Not archiving page with an over-long URL or content type");
+                continue;
+            }
+            byte[] body = capture.body();
+            byte[] compressed = deflate(body);
+            byte codec = compressed.length < body.length ? CODEC_DEFLATE : CODEC_STORED;
+            byte[] stored = codec == CODEC_DEFLATE ? compressed : body;
+            int length = FIXED_HEADER + url.length + type.length + stored.length + 4;
+
+            if (segment == null || (end > 0 && end + length > MAX_SEGMENT_BYTES)) {
+                if (segment != null) {
+                    commit(segment, pending, written, end);
+                    seal(segment);
+                }
+                segment = startSegment();
+                end = 0;
+            }
+
+            long fingerprint = SeenUrlStore.fingerprint(capture.url());
+            Integer sameBatch = written.get(fingerprint);
+            long previous = sameBatch != null ? location(segment.number, sameBatch) : latest(fingerprint);
+
+            ByteBuffer record = ByteBuffer.allocate(length);
+            record.putInt(MAGIC).putInt(length).putLong(fingerprint).putLong(previous)
+                    .putLong(capture.timestamp()).putInt(capture.statusCode()).put(codec).putInt(body.length)
+                    .putShort((short) url.length).put(url).putShort((short) type.length).put(type).put(stored);
+            crc.reset();
+            crc.update(record.array(), 8, length - 12);
+            record.putInt((int) crc.getValue());
+            record.flip();
+            pending.add(record);
+            written.put(fingerprint, (int) end);
+            end += length;
+            rawBytes.addAndGet(body.length);
+            storedBytes.addAndGet(stored.length);
+        }
+        if (segment != null) {
+            commit(segment, pending, written, end);
+        }
+    }
+
+    private byte[] deflate(byte[] body) {
+        deflater.reset();
+        deflater.setInput(body);
+        deflater.finish();
+        byte[] out = new byte[body.length + body.length / 1000 + 64];
+        int n = 0;
+        while (!deflater.finished() && n < out.length) {
+            n += deflater.deflate(out, n, out.length - n);
+        }
+        return deflater.finished() ? Arrays.copyOf(out, n) : body;
+    }
+
+    // Appends the records, then makes them visible to readers
+    private void commit(Segment segment, List<ByteBuffer> pending, Map<Long, Integer> written, long end)
+            throws IOException {
+        if (pending.isEmpty()) return;
+        ByteBuffer[] buffers = pending.toArray(new ByteBuffer[0]);
+        segment.channel.position(segment.size);
+        long remaining = end - segment.size;
+        while (remaining > 0) {
+            remaining -= segment.channel.write(buffers);
+        }
+        segment.size = end;
+        segment.live.putAll(written);
+        records.addAndGet(pending.size());
+        pending.clear();
+        written.clear();
+    }
+
+    private Segment startSegment() throws IOException {
+        Files.createDirectories(dir);
+        int number = 1;
+        for (int existing : segments.keySet()) {
+            number = Math.max(number, existing + 1);
+        }
+        Path path = dir.resolve(segmentName(number, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        Segment segment = new Segment(number, path, channel, 0);
+        segments.put(number, segment);
+        List<Segment> order = new ArrayList<>(searchOrder.size() + 1);
+        order.add(segment);
+        order.addAll(searchOrder);
+        searchOrder = List.copyOf(order);
+        active = segment;
+        return segment;
+    }
+
+    // Writes the segment's sorted index next to it; lookups switch to it
+    // before the in-memory one is dropped
+    private void seal(Segment segment) throws IOException {
+        segment.channel.force(false);
+        long[] pairs = new long[segment.live.size() * 2];
+        int i = 0;
+        for (Map.Entry<Long, Integer> entry : segment.live.entrySet()) {
+            pairs[i++] = entry.getKey();
+            pairs[i++] = entry.getValue();
+        }
+        sortPairs(pairs);
+        Path indexPath = dir.resolve(segmentName(segment.number, INDEX_SUFFIX));
+        Path tmp = dir.resolve(segmentName(segment.number, INDEX_SUFFIX + ".tmp"));
+        ByteBuffer buf = ByteBuffer.allocate(pairs.length * 8);
+        buf.asLongBuffer().put(pairs);
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+            out.force(false);
+        }
+        Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        segment.index = mapIndex(indexPath);
+        segment.live.clear();
+    }
+
+    // Sorts (fingerprint, offset) pairs by fingerprint
+    private static void sortPairs(long[] pairs) {
+        int n = pairs.length / 2;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(pairs[2 * a], pairs[2 * b]));
+        long[] copy = pairs.clone();
+        for (int i = 0; i < n; i++) {
+            pairs[2 * i] = copy[2 * order[i]];
+            pairs[2 * i + 1] = copy[2 * order[i] + 1];
+        }
+    }
+
+    private static LongBuffer mapIndex(Path indexPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asLongBuffer();
+        }
+    }
+
+    private static String segmentName(int number, String suffix) {
+        return String.format("%s%06d%s", SEGMENT_PREFIX, number, suffix);
+    }
+
+    // Sealed segments come back with their index files; one left unsealed
+    // (the last one written, or one whose seal was cut short) is scanned,
+    // a torn record at its end is cut off, and only the newest stays open
+    // for appends
+    private void open() {
+        if (!Files.isDirectory(dir)) return;
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(dir)) {
+            listing.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().forEach(files::add);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to list page archive " + dir, e);
+            return;
+        }
+        List<Segment> order = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            Path path = files.get(i);
+            String name = path.getFileName().toString();
+            try {
+                int number = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length()));
+                Path indexPath = dir.resolve(segmentName(number, INDEX_SUFFIX));
+                boolean last = i == files.size() - 1;
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                Segment segment = new Segment(number, path, channel, channel.size());
+                if (Files.exists(indexPath)) {
+                    segment.index = mapIndex(indexPath);
+                } else {
+                    recover(segment);
+                    if (!last) {
+                        seal(segment);
+                    }
+                }
+                segments.put(number, segment);
+                order.add(0, segment);
+                if (last && segment.index == null) {
+                    active = segment;
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Skipping unreadable archive segment " + path, e);
+            }
+        }
+        searchOrder = List.copyOf(order);
+    }
+
+    private void recover(Segment segment) throws IOException {
+        long fileSize = segment.channel.size();
+        ByteBuffer buf = fileSize == 0 ? ByteBuffer.allocate(0)
+                : segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        int offset = 0;
+        CRC32 check = new CRC32();
+        while (offset + FIXED_HEADER + 4 <= fileSize) {
+            if (buf.getInt(offset) != MAGIC) break;
+            int length = buf.getInt(offset + 4);
+            if (length < FIXED_HEADER + 4 || offset + (long) length > fileSize) break;
+            check.reset();
+            check.update(buf.slice(offset + 8, length - 12));
+            if ((int) check.getValue() != buf.getInt(offset + length - 4)) break;
+            segment.live.put(buf.getLong(offset + 8), offset);
+            offset += length;
+        }
+        if (offset < fileSize) {
+            LOGGER.warning("Truncating " + (fileSize - offset) + " bytes of incomplete records from " + segment.path);
+            segment.channel.truncate(offset);
+        }
+        segment.size = offset;
+    }
+
+    private void markProcessed(int count) {
+        processed.addAndGet(count);
+        synchronized (progressLock) {
+            progressLock.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.crawler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Fixed-size ring of the most recent crawl results, each tagged with a
+// sequence number that keeps increasing across crawls. Pollers pass the last
+// sequence they saw and copy only what was added since; older results are
+// dropped from memory but stay in SQLite.
+//
+// Results are held as CompactResults. An open-addressing table from URL
+// fingerprint to ring slot finds the result of a page's referrer, whose packed
+// URL the page then shares; an evicted result's URL stays reachable for as
+// long as results that came from it are in the ring.
+class ResultBuffer {
+    static final int DEFAULT_CAPACITY = 10_000;
+    private static final long EMPTY = 0L;
+
+    private final CompactResult[] ring;
+    private final long[] fingerprints;
+    private final CompactResult.Codec codec = new CompactResult.Codec();
+    // URL fingerprint -> ring slot of the newest result for it
+    private final long[] indexKeys;
+    private final int[] indexSlots;
+    // Tells this ring's numbering apart from that of an earlier process, whose
+    // sequence numbers a client may still hold
+    private final long epoch = System.currentTimeMillis();
+    private long nextSeq = 1;
+    private long oldestSeq = 1;
+    private long evictedThrough = 0;
+
+    record Entry(long seq, CrawlResult result) {}
+
+    // Entries after the requested sequence; truncated means some of them had
+    // already been evicted and must be read from the database instead
+    record Slice(List<Entry> entries, long lastSeq, boolean truncated, long epoch) {}
+
+    ResultBuffer(int capacity) {
+        this.ring = new CompactResult[Math.max(1, capacity)];
+        this.fingerprints = new long[ring.length];
+        // At most two thirds full
+        int tableSize = Integer.highestOneBit(Math.max(1, ring.length + ring.length / 2 - 1)) << 1;
+        this.indexKeys = new long[tableSize];
+        this.indexSlots = new int[tableSize];
+    }
+
+    synchronized long add(CrawlResult result) {
+        byte[] referrer = packedReferrer(result.referrer());
+        if (nextSeq - oldestSeq == ring.length) {
+            evictedThrough = oldestSeq;
+            unindex(fingerprints[slot(oldestSeq)], slot(oldestSeq));
+            oldestSeq++;
+        }
+        long seq = nextSeq++;
+        int slot = slot(seq);
+        long fp = fingerprintOf(result.url());
+        ring[slot] = codec.encode(result, referrer);
+        fingerprints[slot] = fp;
+        index(fp, slot);
+        return seq;
+    }
+
+    synchronized Slice since(long afterSeq) {
+        return since(afterSeq, Long.MAX_VALUE);
+    }
+
+    // Only the entries up to throughSeq, e.g. where another reader's next slice starts
+    synchronized Slice since(long afterSeq, long throughSeq) {
+        long to = Math.min(nextSeq - 1, throughSeq);
+        long from = Math.max(afterSeq + 1, oldestSeq);
+        List<Entry> entries = new ArrayList<>((int) Math.max(0, to + 1 - from));
+        for (long seq = from; seq <= to; seq++) {
+            entries.add(new Entry(seq, codec.decode(ring[slot(seq)])));
+        }
+        return new Slice(entries, to, afterSeq < evictedThrough, epoch);
+    }
+
+    long epoch() {
+        return epoch;
+    }
+
+    synchronized long lastSeq() {
+        return nextSeq - 1;
+    }
+
+    synchronized List<CrawlResult> snapshot() {
+        List<CrawlResult> results = new ArrayList<>((int) (nextSeq - oldestSeq));
+        for (long seq = oldestSeq; seq < nextSeq; seq++) {
+            results.add(codec.decode(ring[slot(seq)]));
+        }
+        return results;
+    }
+
+    // Empties the ring for a new crawl; sequence numbers carry on from where they were
+    synchronized void clear() {
+        Arrays.fill(ring, null);
+        Arrays.fill(indexKeys, EMPTY);
+        codec.clear();
+        oldestSeq = nextSeq;
+        evictedThrough = 0;
+    }
+
+    private int slot(long seq) {
+        return (int) (seq % ring.length);
+    }
+
+    // The referrer's result data when it is in the ring, else the referrer packed on its own
+    private byte[] packedReferrer(String referrer) {
+        if (referrer != null && !referrer.isEmpty()) {
+            int slot = lookup(fingerprintOf(referrer));
+            if (slot >= 0) {
+                byte[] data = ring[slot].data();
+                if (referrer.equals(codec.decodeUrl(data))) {
+                    return data;
+                }
+            }
+        }
+        return codec.encodeUrl(referrer);
+    }
+
+    private static long fingerprintOf(String url) {
+        long fp = SeenUrlStore.fingerprint(url);
+        return fp == EMPTY ? 1 : fp;
+    }
+
+    private int lookup(long fp) {
+        int mask = indexKeys.length - 1;
+        for (int i = (int) fp & mask; ; i = (i + 1) & mask) {
+            if (indexKeys[i] == EMPTY) return -1;
+            if (indexKeys[i] == fp) return indexSlots[i];
+        }
+    }
+
+    private void index(long fp, int slot) {
+        int mask = indexKeys.length - 1;
+        int i = (int) fp & mask;
+        while (indexKeys[i] != EMPTY && indexKeys[i] != fp) {
+            i = (i + 1) & mask;
+        }
+        indexKeys[i] = fp;
+        indexSlots[i] = slot;
+    }
+
+    // Drops an evicted result unless a newer result for the same URL replaced
+    // it, shifting later entries of the probe run back into the gap
+    private void unindex(long fp, int slot) {
+        int mask = indexKeys.length - 1;
+        int i = (int) fp & mask;
+        while (indexKeys[i] != fp) {
+            if (indexKeys[i] == EMPTY) return;
+            i = (i + 1) & mask;
+        }
+        if (indexSlots[i] != slot) return;
+        int gap = i;
+        for (int j = (gap + 1) & mask; indexKeys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = (int) indexKeys[j] & mask;
+            // Move j into the gap unless its home lies cyclically in (gap, j]
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                indexKeys[gap] = indexKeys[j];
+                indexSlots[gap] = indexSlots[j];
+                gap = j;
+            }
+        }
+        indexKeys[gap] = EMPTY;
+    }
+}
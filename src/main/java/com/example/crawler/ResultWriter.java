@@ -0,0 +1,204 @@
+package com.example.crawler;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Write-behind stage: crawl workers enqueue results, a single writer thread
+// drains them into batched transactions on one long-lived connection
+class ResultWriter {
+    private static final Logger LOGGER = Logger.getLogger(ResultWriter.class.getName());
+
+    private final DatabaseManager db;
+    private final BlockingQueue<Row> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Thread thread;
+    private final Object progressLock = new Object();
+
+    // Every enqueued row is eventually counted as processed, whether written or dropped
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong rowsDropped = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private volatile int lastBatchSize = 0;
+    private volatile boolean flushRequested = false;
+    private volatile boolean closed = false;
+
+    private Connection conn;
+
+    // A result, its crawl session and, in revisit mode, the validators to save with it
+    record Row(String sessionId, CrawlResult result, DatabaseManager.PageValidators validators) {}
+
+    ResultWriter(DatabaseManager db, int batchSize, long flushIntervalMs, int queueCapacity) {
+        this.db = db;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMs));
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.thread = new Thread(this::runLoop, "crawl-result-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // Blocks the caller while the queue is full, which throttles workers to the write rate
+    void enqueue(String sessionId, CrawlResult result, DatabaseManager.PageValidators validators) {
+        if (closed) {
+            LOGGER.warning("Result writer is closed, dropping result for " + result.url());
+            rowsDropped.incrementAndGet();
+            return;
+        }
+        enqueued.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            queue.put(new Row(sessionId, result, validators));
+            Metrics.DB_QUEUE_WAIT.recordSince(start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warning("Interrupted while queueing result for " + result.url());
+            rowsDropped.incrementAndGet();
+            markProcessed(1);
+        }
+    }
+
+    // Waits until every result enqueued before this call has been committed (or dropped)
+    void flush() {
+        long target = enqueued.get();
+        synchronized (progressLock) {
+            while (processed.get() < target && thread.isAlive()) {
+                flushRequested = true;
+                try {
+                    progressLock.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    void close() {
+        flush();
+        closed = true;
+        try {
+            thread.join(TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos) + 5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    DatabaseManager.WriterStats stats() {
+        long commitCount = commits.get();
+        long rows = rowsWritten.get();
+        return new DatabaseManager.WriterStats(
+                queue.size(),
+                rows,
+                rowsDropped.get(),
+                commitCount,
+                lastBatchSize,
+                commitCount == 0 ? 0 : (double) rows / commitCount
+        );
+    }
+
+    private void runLoop() {
+        List<Row> batch = new ArrayList<>(batchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Row first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch);
+            } catch (InterruptedException e) {
+                queue.drainTo(batch);
+                closed = true;
+            }
+
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+        closeConnection();
+    }
+
+    // Lingers up to the flush interval so that light traffic still commits in groups
+    private void fillBatch(List<Row> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize && !flushRequested && !closed) {
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            Row next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        flushRequested = false;
+    }
+
+    // A failed batch has been rolled back; it is retried once on a fresh
+    // connection, in case the old one was what broke, and dropped after that
+    private void writeBatch(List<Row> batch) {
+        try {
+            if (!tryWrite(batch)) {
+                LOGGER.warning("Retrying batch of " + batch.size() + " crawl results on a new connection");
+                if (!tryWrite(batch)) {
+                    LOGGER.severe("Dropping batch of " + batch.size() + " crawl results");
+                    rowsDropped.addAndGet(batch.size());
+                }
+            }
+        } finally {
+            markProcessed(batch.size());
+        }
+    }
+
+    private boolean tryWrite(List<Row> batch) {
+        try {
+            if (conn == null) {
+                conn = db.openWriterConnection();
+            }
+            long start = System.nanoTime();
+            db.insertBatch(conn, batch);
+            Metrics.DB_INSERT.recordSince(start);
+            rowsWritten.addAndGet(batch.size());
+            commits.incrementAndGet();
+            lastBatchSize = batch.size();
+            return true;
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Failed to write batch of " + batch.size() + " crawl results", e);
+            closeConnection();
+            return false;
+        }
+    }
+
+    private void markProcessed(int count) {
+        processed.addAndGet(count);
+        synchronized (progressLock) {
+            progressLock.notifyAll();
+        }
+    }
+
+    private void closeConnection() {
+        if (conn == null) return;
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Failed to close writer connection", e);
+        }
+        conn = null;
+    }
+}
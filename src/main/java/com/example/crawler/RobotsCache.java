@@ -0,0 +1,134 @@
+package com.example.crawler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Parsed robots.txt per origin, shared by every crawl the service runs. A
+// robots.txt only covers the scheme, host and port it was fetched from
+// (RFC 9309 section 2.3), so http://h and https://h:8443 are cached apart. The
+// first task to reach an origin fetches its robots.txt while any others for
+// it wait on the same future, so each origin is asked once per TTL. The map is
+// an access-ordered LinkedHashMap, evicting the least recently used origin
+// past maxHosts. Origins that could not be reached expire after a short retry
+// TTL.
+class RobotsCache {
+    private static final Logger LOGGER = Logger.getLogger(RobotsCache.class.getName());
+
+    static final int DEFAULT_MAX_HOSTS = 10_000;
+    static final long DEFAULT_TTL_MS = 24 * 60 * 60_000L;
+    private static final long UNREACHABLE_TTL_MS = 60_000;
+
+    private record Entry(CompletableFuture<RobotsTxt> robots, long fetchedAt) {}
+
+    private final int maxHosts;
+    private final long ttlMs;
+    private final Map<String, Entry> entries;
+
+    RobotsCache() {
+        this(DEFAULT_MAX_HOSTS, DEFAULT_TTL_MS);
+    }
+
+    RobotsCache(int maxHosts, long ttlMs) {
+        this.maxHosts = Math.max(1, maxHosts);
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > RobotsCache.this.maxHosts;
+            }
+        };
+    }
+
+    // Rules for the URL's origin, fetching its robots.txt on a miss. Blocks
+    // while another thread is fetching the same origin.
+    RobotsTxt rulesFor(String url, Fetcher fetcher, int timeoutMs) {
+        String origin = originOf(url);
+        CompletableFuture<RobotsTxt> cached = null;
+        CompletableFuture<RobotsTxt> pending = null;
+        synchronized (this) {
+            Entry entry = entries.get(origin);
+            if (entry != null && !isExpired(entry)) {
+                cached = entry.robots();
+            } else {
+                pending = new CompletableFuture<>();
+                entries.put(origin, new Entry(pending, System.currentTimeMillis()));
+            }
+        }
+        if (cached != null) {
+            return cached.join();
+        }
+        RobotsTxt robots = fetch(robotsUrl(url), fetcher, timeoutMs);
+        pending.complete(robots);
+        return robots;
+    }
+
+    private boolean isExpired(Entry entry) {
+        CompletableFuture<RobotsTxt> robots = entry.robots();
+        if (!robots.isDone()) return false;
+        long ttl = robots.join().isUnreachable() ? UNREACHABLE_TTL_MS : ttlMs;
+        return System.currentTimeMillis() - entry.fetchedAt() >= ttl;
+    }
+
+    private static RobotsTxt fetch(String robotsUrl, Fetcher fetcher, int timeoutMs) {
+        try (FetchResponse resp = fetcher.fetch(robotsUrl, timeoutMs)) {
+            int status = resp.statusCode();
+            if (status >= 200 && status < 300) {
+                byte[] body = resp.body().readNBytes(RobotsTxt.MAX_BYTES);
+                return RobotsTxt.parse(new String(body, StandardCharsets.UTF_8));
+            }
+            if (status == 429 || status >= 500) {
+                return RobotsTxt.UNREACHABLE;
+            }
+            return RobotsTxt.ALLOW_ALL;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Could not fetch " + robotsUrl, e);
+            return RobotsTxt.UNREACHABLE;
+        }
+    }
+
+    // scheme://authority/robots.txt of the given URL
+    static String robotsUrl(String url) {
+        return originOf(url) + "/robots.txt";
+    }
+
+    // scheme://authority of the given URL
+    static String originOf(String url) {
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = start;
+        while (end < url.length()) {
+            char c = url.charAt(end);
+            if (c == '/' || c == '?' || c == '#') break;
+            end++;
+        }
+        return url.substring(0, end);
+    }
+
+    // Everything after the authority, which is what robots rules match against
+    static String pathOf(String url) {
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int slash = start;
+        while (slash < url.length()) {
+            char c = url.charAt(slash);
+            if (c == '/' || c == '?' || c == '#') break;
+            slash++;
+        }
+        int fragment = url.indexOf('#', slash);
+        String path = url.substring(slash, fragment >= 0 ? fragment : url.length());
+        return path.startsWith("/") ? path : "/" + path;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.crawler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Parsed robots.txt of one host (RFC 9309). Rules are grouped by user-agent;
+// a crawler uses the group naming its product token, else the "*" group. The
+// longest matching Allow/Disallow pattern wins, with Allow winning ties, and
+// patterns may use the * and $ wildcards. Crawl-delay and Sitemap lines are
+// kept as well, although they are extensions to the RFC.
+class RobotsTxt {
+    // Parse at most this much of a robots.txt; the RFC asks for at least 500 KiB
+    static final int MAX_BYTES = 512 * 1024;
+    private static final long MAX_CRAWL_DELAY_MS = 60_000;
+
+    // 4xx: no restrictions
+    static final RobotsTxt ALLOW_ALL = new RobotsTxt(Map.of(), List.of(), false);
+    // 5xx or network failure: the host may not be crawled until it answers
+    static final RobotsTxt UNREACHABLE = new RobotsTxt(Map.of(), List.of(), true);
+
+    private record Rule(String pattern, boolean allow) {}
+
+    private static final class Group {
+        final List<Rule> rules = new ArrayList<>();
+        long crawlDelayMs = 0;
+    }
+
+    private final Map<String, Group> groups;
+    private final List<String> sitemaps;
+    private final boolean unreachable;
+
+    private RobotsTxt(Map<String, Group> groups, List<String> sitemaps, boolean unreachable) {
+        this.groups = groups;
+        this.sitemaps = sitemaps;
+        this.unreachable = unreachable;
+    }
+
+    static RobotsTxt parse(String content) {
+        Map<String, Group> groups = new HashMap<>();
+        List<String> sitemaps = new ArrayList<>();
+        // User-agent lines in a row share the group that follows them
+        List<Group> current = new ArrayList<>();
+        boolean inRules = false;
+
+        for (String rawLine : content.split("\r\n|\r|\n")) {
+            int hash = rawLine.indexOf('#');
+            String line = (hash >= 0 ? rawLine.substring(0, hash) : rawLine).trim();
+            int colon = line.indexOf(':');
+            if (colon <= 0) continue;
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+
+            switch (key) {
+                case "user-agent" -> {
+                    if (inRules) {
+                        current = new ArrayList<>();
+                        inRules = false;
+                    }
+                    current.add(groups.computeIfAbsent(value.toLowerCase(Locale.ROOT), k -> new Group()));
+                }
+                case "allow", "disallow" -> {
+                    inRules = true;
+                    // An empty Disallow allows everything, which is the default anyway
+                    if (value.isEmpty()) continue;
+                    Rule rule = new Rule(value, key.equals("allow"));
+                    for (Group group : current) {
+                        group.rules.add(rule);
+                    }
+                }
+                case "crawl-delay" -> {
+                    inRules = true;
+                    long delayMs = parseCrawlDelay(value);
+                    for (Group group : current) {
+                        group.crawlDelayMs = delayMs;
+                    }
+                }
+                case "sitemap" -> {
+                    if (!value.isEmpty()) sitemaps.add(value);
+                }
+                default -> {
+                }
+            }
+        }
+        return new RobotsTxt(groups, Collections.unmodifiableList(sitemaps), false);
+    }
+
+    private static long parseCrawlDelay(String value) {
+        try {
+            double seconds = Double.parseDouble(value);
+            if (!(seconds > 0)) return 0;
+            return (long) Math.min(MAX_CRAWL_DELAY_MS, seconds * 1000);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Product token of a User-Agent header: "MultiCrawlerBot/1.0 (+url)" -> "multicrawlerbot"
+    static String agentToken(String userAgent) {
+        int end = 0;
+        while (end < userAgent.length()) {
+            char c = userAgent.charAt(end);
+            if (!(Character.isLetterOrDigit(c) || c == '-' || c == '_')) break;
+            end++;
+        }
+        return userAgent.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+
+    boolean isUnreachable() {
+        return unreachable;
+    }
+
+    // pathAndQuery is everything after the authority, starting with "/"
+    boolean isAllowed(String agent, String pathAndQuery) {
+        if (unreachable) return false;
+        Group group = groupFor(agent);
+        if (group == null) return true;
+        if (pathAndQuery.equals("/robots.txt")) return true;
+
+        int bestLength = -1;
+        boolean allowed = true;
+        for (Rule rule : group.rules) {
+            int length = rule.pattern().length();
+            if (length < bestLength || (length == bestLength && allowed)) continue;
+            if (matches(rule.pattern(), pathAndQuery)) {
+                bestLength = length;
+                allowed = rule.allow();
+            }
+        }
+        return allowed;
+    }
+
+    long crawlDelayMs(String agent) {
+        Group group = groupFor(agent);
+        return group != null ? group.crawlDelayMs : 0;
+    }
+
+    List<String> sitemaps() {
+        return sitemaps;
+    }
+
+    private Group groupFor(String agent) {
+        Group group = groups.get(agent);
+        return group != null ? group : groups.get("*");
+    }
+
+    // Prefix match where * matches any run of characters and a trailing $
+    // anchors the pattern at the end of the path. The file is written by the
+    // crawled host, so stars are matched by two pointers that only ever back
+    // up to the most recent *: O(pattern x path) at worst, never exponential.
+    static boolean matches(String pattern, String path) {
+        boolean anchored = pattern.endsWith("$");
+        int patternEnd = anchored ? pattern.length() - 1 : pattern.length();
+        if (pattern.indexOf('*') < 0) {
+            return anchored
+                    ? path.length() == patternEnd && path.startsWith(pattern.substring(0, patternEnd))
+                    : path.startsWith(pattern);
+        }
+        int p = 0;
+        int s = 0;
+        int star = -1;   // pattern index of the last * seen
+        int resume = 0;  // path index that * currently extends to
+        while (s < path.length()) {
+            if (p < patternEnd && pattern.charAt(p) == '*') {
+                star = p++;
+                resume = s;
+            } else if (p < patternEnd && pattern.charAt(p) == path.charAt(s)) {
+                p++;
+                s++;
+            } else if (p == patternEnd && !anchored) {
+                // The whole pattern matched a prefix of the path
+                return true;
+            } else if (star >= 0) {
+                // Let the last * swallow one more character and retry after it
+                p = star + 1;
+                s = ++resume;
+            } else {
+                return false;
+            }
+        }
+        while (p < patternEnd && pattern.charAt(p) == '*') p++;
+        return p == patternEnd;
+    }
+}
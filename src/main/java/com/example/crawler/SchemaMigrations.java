@@ -0,0 +1,225 @@
+package com.example.crawler;
+
+import org.sqlite.Function;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.logging.Logger;
+
+// Versioned schema changes for the crawl database. schema_version records
+// every migration applied; on open, the ones past the recorded version run in
+// order, each in its own transaction together with its version row, so an
+// interrupted upgrade resumes at the step that failed. Steps tolerate objects
+// that already exist, which lets databases created before this table existed
+// (version 0) upgrade in place. New schema changes are appended to MIGRATIONS,
+// never edited into an existing step.
+final class SchemaMigrations {
+    private static final Logger LOGGER = Logger.getLogger(SchemaMigrations.class.getName());
+
+    @FunctionalInterface
+    private interface Step {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private record Migration(int version, String description, Step step) {}
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "crawl results and page validators", SchemaMigrations::createTables),
+            new Migration(2, "crawl session column", SchemaMigrations::addSessionColumn),
+            new Migration(3, "host column and lookup indexes", SchemaMigrations::addHostColumn),
+            new Migration(4, "per-host, per-status and latency rollups", SchemaMigrations::createRollups),
+            new Migration(5, "links of revisited pages", SchemaMigrations::createPageLinks)
+    );
+
+    private SchemaMigrations() {}
+
+    static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+    }
+
+    // Brings the database up to the latest version; returns the version it was at
+    static int migrate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INTEGER PRIMARY KEY," +
+                    "description TEXT," +
+                    "applied_at INTEGER" +
+                    ")");
+        }
+        int current = currentVersion(conn);
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version() <= current) continue;
+                apply(conn, migration);
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return current;
+    }
+
+    private static int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void apply(Connection conn, Migration migration) throws SQLException {
+        long start = System.currentTimeMillis();
+        try {
+            migration.step().apply(conn);
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)")) {
+                pstmt.setInt(1, migration.version());
+                pstmt.setString(2, migration.description());
+                pstmt.setLong(3, System.currentTimeMillis());
+                pstmt.executeUpdate();
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw new SQLException("Schema migration " + migration.version() + " ("
+                    + migration.description() + ") failed", e);
+        }
+        LOGGER.info("Applied schema migration " + migration.version() + " (" + migration.description()
+                + ") in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private static void createTables(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS crawl_results (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "url TEXT NOT NULL," +
+                    "status_code INTEGER," +
+                    "content_size INTEGER," +
+                    "referrer TEXT," +
+                    "content_type TEXT," +
+                    "page_title TEXT," +
+                    "load_time INTEGER," +
+                    "timestamp INTEGER" +
+                    ")");
+            // Validators and content digest of each page seen in revisit mode
+            stmt.execute("CREATE TABLE IF NOT EXISTS page_validators (" +
+                    "url TEXT PRIMARY KEY," +
+                    "etag TEXT," +
+                    "last_modified TEXT," +
+                    "content_hash TEXT," +
+                    "page_title TEXT," +
+                    "parsed_at INTEGER" +
+                    ")");
+        }
+    }
+
+    // Rows from before crawl sessions belong to the default session
+    private static void addSessionColumn(Connection conn) throws SQLException {
+        if (!hasColumn(conn, "crawl_results", "session_id")) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ALTER TABLE crawl_results ADD COLUMN session_id TEXT NOT NULL DEFAULT '"
+                        + CrawlSessions.DEFAULT_SESSION + "'");
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            // Revisits looked up an unchanged page's links by referrer until
+            // migration 5, which drops this index again
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_crawl_results_referrer ON crawl_results (referrer, timestamp)");
+            // Per-session keyset pages and seen-set restores
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_crawl_results_session ON crawl_results (session_id, id)");
+        }
+    }
+
+    // The host is derived once at insert time instead of matching URL
+    // patterns on every query. Existing rows are filled in with the same
+    // Frontier.hostOf the writer uses, registered as a SQL function.
+    private static void addHostColumn(Connection conn) throws SQLException {
+        if (!hasColumn(conn, "crawl_results", "host")) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ALTER TABLE crawl_results ADD COLUMN host TEXT");
+            }
+        }
+        Function.create(conn, "url_host", new Function() {
+            @Override
+            protected void xFunc() throws SQLException {
+                String url = value_text(0);
+                result(url != null ? Frontier.hostOf(url) : null);
+            }
+        });
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE crawl_results SET host = url_host(url) WHERE host IS NULL");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_crawl_results_url ON crawl_results (url)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_crawl_results_status ON crawl_results (status_code, id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_crawl_results_timestamp ON crawl_results (timestamp)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_crawl_results_host ON crawl_results (host, id)");
+        } finally {
+            Function.destroy(conn, "url_host");
+        }
+    }
+
+    // Rollups start from whatever the table already holds; the writer keeps
+    // them current from here on
+    private static void createRollups(Connection conn) throws SQLException {
+        Function.create(conn, "latency_bucket", new Function() {
+            @Override
+            protected void xFunc() throws SQLException {
+                result(StatsRollup.latencyBucket(value_long(0)));
+            }
+        });
+        try (Statement stmt = conn.createStatement()) {
+            for (String ddl : StatsRollup.CREATE_TABLES) {
+                stmt.execute(ddl);
+            }
+            stmt.execute("DELETE FROM host_stats");
+            stmt.execute("DELETE FROM status_stats");
+            stmt.execute("DELETE FROM latency_stats");
+            stmt.executeUpdate("INSERT INTO host_stats (session_id, host, pages, successes, errors, bytes, " +
+                    "load_time, first_seen, last_seen) " +
+                    "SELECT session_id, COALESCE(host, ''), COUNT(*), " +
+                    "SUM(CASE WHEN status_code >= 200 AND status_code < 300 THEN 1 ELSE 0 END), " +
+                    "SUM(CASE WHEN status_code >= 400 THEN 1 ELSE 0 END), " +
+                    "COALESCE(SUM(content_size), 0), COALESCE(SUM(load_time), 0), MIN(timestamp), MAX(timestamp) " +
+                    "FROM crawl_results GROUP BY session_id, COALESCE(host, '')");
+            stmt.executeUpdate("INSERT INTO status_stats (session_id, status_code, pages, bytes) " +
+                    "SELECT session_id, status_code, COUNT(*), COALESCE(SUM(content_size), 0) " +
+                    "FROM crawl_results GROUP BY session_id, status_code");
+            stmt.executeUpdate("INSERT INTO latency_stats (session_id, bucket, pages) " +
+                    "SELECT session_id, latency_bucket(COALESCE(load_time, 0)), COUNT(*) " +
+                    "FROM crawl_results GROUP BY 1, 2");
+        } finally {
+            Function.destroy(conn, "latency_bucket");
+        }
+    }
+
+    // The links extracted from each page parsed in revisit mode, replayed when
+    // the page comes back unchanged. Results by referrer only held the links a
+    // page was first to discover, so nothing is carried over from them.
+    private static void createPageLinks(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS page_links (" +
+                    "url TEXT NOT NULL," +
+                    "link TEXT NOT NULL" +
+                    ")");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_page_links_url ON page_links (url)");
+            stmt.execute("DROP INDEX IF EXISTS idx_crawl_results_referrer");
+            // A page with validators but no links on record would come back
+            // unchanged with no outlinks; without validators it is fetched and
+            // parsed in full on its next revisit
+            stmt.execute("DELETE FROM page_validators");
+        }
+    }
+
+    private static boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equals(rs.getString("name"))) return true;
+            }
+        }
+        return false;
+    }
+}
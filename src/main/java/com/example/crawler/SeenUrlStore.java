@@ -0,0 +1,58 @@
+package com.example.crawler;
+
+// Set of URLs already seen during a crawl. Implementations store 64-bit
+// fingerprints rather than the URL strings themselves.
+public interface SeenUrlStore {
+    String MODE_EXACT = "exact";
+    String MODE_BLOOM = "bloom";
+
+    // Records the URL and returns true if it had not been seen before
+    boolean add(String url);
+
+    boolean contains(String url);
+
+    long size();
+
+    void clear();
+
+    MemoryReport memoryReport();
+
+    static SeenUrlStore create(CrawlRequest req) {
+        if (MODE_BLOOM.equals(req.seenStore())) {
+            return new BloomSeenUrlStore(req.expectedUrls(), req.falsePositiveRate());
+        }
+        return new FingerprintSeenUrlStore(req.expectedUrls());
+    }
+
+    // Heap needed for the given number of URLs, for sizing -Xmx before a crawl
+    static MemoryReport estimate(String mode, long expectedUrls, double falsePositiveRate) {
+        if (MODE_BLOOM.equals(mode)) {
+            // The first filter of a scalable Bloom filter gets half the error budget
+            long bits = BloomSeenUrlStore.optimalBits(expectedUrls, falsePositiveRate / 2);
+            return new MemoryReport(MODE_BLOOM, expectedUrls, bits / 8);
+        }
+        long slots = Long.highestOneBit(Math.max(2, expectedUrls * 2 - 1)) << 1;
+        return new MemoryReport(MODE_EXACT, expectedUrls, slots * Long.BYTES);
+    }
+
+    // 64-bit FNV-1a over the URL's chars followed by a murmur3 finalizer
+    static long fingerprint(String url) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            h ^= url.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    record MemoryReport(String mode, long entries, long bytes) {
+        public double bytesPerEntry() {
+            return entries == 0 ? 0 : (double) bytes / entries;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.crawler;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+// Seeds a crawl from the sitemaps a host declares in robots.txt, or from
+// /sitemap.xml when it declares none. Sitemaps are read with a StAX cursor
+// while they download, so neither a 50,000-URL urlset nor a large sitemap
+// index is ever held in memory; each <loc> is handed on as soon as it is read.
+// Nested indexes are followed breadth-first up to MAX_SITEMAPS documents.
+class SitemapSeeder {
+    private static final Logger LOGGER = Logger.getLogger(SitemapSeeder.class.getName());
+
+    private static final int MAX_SITEMAPS = 1000;
+    private static final XMLInputFactory XML = newFactory();
+
+    private final Fetcher fetcher;
+    private final int timeoutMs;
+
+    SitemapSeeder(Fetcher fetcher, int timeoutMs) {
+        this.fetcher = fetcher;
+        this.timeoutMs = timeoutMs;
+    }
+
+    // Safe against entity expansion and external entities in hostile sitemaps
+    private static XMLInputFactory newFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        return factory;
+    }
+
+    // Streams every page URL found to onPage; returns the number of sitemaps read
+    int seed(String origin, RobotsTxt robots, Consumer<String> onPage) {
+        Deque<String> pending = new ArrayDeque<>();
+        List<String> declared = robots.sitemaps();
+        if (declared.isEmpty()) {
+            pending.add(origin + "/sitemap.xml");
+        } else {
+            pending.addAll(declared);
+        }
+        Set<String> visited = new HashSet<>();
+        int read = 0;
+        while (!pending.isEmpty() && visited.size() < MAX_SITEMAPS) {
+            if (Thread.currentThread().isInterrupted()) break;
+            String sitemap = pending.poll();
+            if (!visited.add(sitemap)) continue;
+            Consumer<String> onSitemap = nested -> {
+                if (visited.size() + pending.size() < MAX_SITEMAPS) pending.add(nested);
+            };
+            if (read(sitemap, onPage, onSitemap)) {
+                read++;
+            }
+        }
+        return read;
+    }
+
+    private boolean read(String sitemapUrl, Consumer<String> onPage, Consumer<String> onSitemap) {
+        try (FetchResponse resp = fetcher.fetch(sitemapUrl, timeoutMs)) {
+            if (resp.statusCode() >= 400) return false;
+            parse(resp.body(), onPage, onSitemap);
+            return true;
+        } catch (IOException | XMLStreamException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Skipping sitemap " + sitemapUrl, e);
+            return false;
+        }
+    }
+
+    // <urlset><url><loc> entries go to onPage, <sitemapindex><sitemap><loc>
+    // entries to onSitemap. Gzipped sitemaps are detected by their magic bytes.
+    static void parse(InputStream in, Consumer<String> onPage, Consumer<String> onSitemap)
+            throws IOException, XMLStreamException {
+        InputStream body = new BufferedInputStream(in);
+        body.mark(2);
+        int b1 = body.read();
+        int b2 = body.read();
+        body.reset();
+        if (b1 == 0x1f && b2 == 0x8b) {
+            body = new GZIPInputStream(body, 8192);
+        }
+
+        XMLStreamReader reader = XML.createXMLStreamReader(body);
+        try {
+            String parent = null;
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) continue;
+                // Extensions such as <image:loc> keep their prefix and are skipped
+                String name = reader.getLocalName();
+                if (name.equals("url") || name.equals("sitemap")) {
+                    parent = name;
+                } else if (name.equals("loc") && parent != null) {
+                    String loc = reader.getElementText().trim();
+                    if (loc.isEmpty()) continue;
+                    if (parent.equals("url")) {
+                        onPage.accept(loc);
+                    } else {
+                        onSitemap.accept(loc);
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+}
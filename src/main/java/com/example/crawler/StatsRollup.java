@@ -0,0 +1,159 @@
+package com.example.crawler;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Running per-host, per-status and load-time totals kept beside crawl_results
+// so that statistics read a few rollup rows instead of aggregating the whole
+// table. Each write batch is folded into one delta per key, applied with
+// UPSERTs in the batch's own transaction, so the rollups always agree with
+// the committed rows.
+final class StatsRollup {
+    static final List<String> CREATE_TABLES = List.of(
+            "CREATE TABLE IF NOT EXISTS host_stats (" +
+                    "session_id TEXT NOT NULL," +
+                    "host TEXT NOT NULL," +
+                    "pages INTEGER NOT NULL," +
+                    "successes INTEGER NOT NULL," +
+                    "errors INTEGER NOT NULL," +
+                    "bytes INTEGER NOT NULL," +
+                    "load_time INTEGER NOT NULL," +
+                    "first_seen INTEGER," +
+                    "last_seen INTEGER," +
+                    "PRIMARY KEY (session_id, host)" +
+                    ") WITHOUT ROWID",
+            "CREATE TABLE IF NOT EXISTS status_stats (" +
+                    "session_id TEXT NOT NULL," +
+                    "status_code INTEGER NOT NULL," +
+                    "pages INTEGER NOT NULL," +
+                    "bytes INTEGER NOT NULL," +
+                    "PRIMARY KEY (session_id, status_code)" +
+                    ") WITHOUT ROWID",
+            // Load-time histogram, see latencyBucket
+            "CREATE TABLE IF NOT EXISTS latency_stats (" +
+                    "session_id TEXT NOT NULL," +
+                    "bucket INTEGER NOT NULL," +
+                    "pages INTEGER NOT NULL," +
+                    "PRIMARY KEY (session_id, bucket)" +
+                    ") WITHOUT ROWID"
+    );
+
+    private static final String UPSERT_HOST_SQL = "INSERT INTO host_stats (session_id, host, pages, successes, " +
+            "errors, bytes, load_time, first_seen, last_seen) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT(session_id, host) DO UPDATE SET pages = pages + excluded.pages, " +
+            "successes = successes + excluded.successes, errors = errors + excluded.errors, " +
+            "bytes = bytes + excluded.bytes, load_time = load_time + excluded.load_time, " +
+            "first_seen = MIN(first_seen, excluded.first_seen), last_seen = MAX(last_seen, excluded.last_seen)";
+    private static final String UPSERT_STATUS_SQL = "INSERT INTO status_stats (session_id, status_code, pages, " +
+            "bytes) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT(session_id, status_code) DO UPDATE SET pages = pages + excluded.pages, " +
+            "bytes = bytes + excluded.bytes";
+    private static final String UPSERT_LATENCY_SQL = "INSERT INTO latency_stats (session_id, bucket, pages) " +
+            "VALUES (?, ?, ?) " +
+            "ON CONFLICT(session_id, bucket) DO UPDATE SET pages = pages + excluded.pages";
+
+    // Below EXACT_MS every millisecond has its own bucket; above it each power
+    // of two is split into 8, so a bucket's bound is within 12.5% of any value in it
+    private static final int EXACT_SHIFT = 4;
+    private static final int EXACT_MS = 1 << EXACT_SHIFT;
+    private static final int SUB_BITS = 3;
+
+    private record HostKey(String sessionId, String host) {}
+
+    private record StatusKey(String sessionId, int statusCode) {}
+
+    private record BucketKey(String sessionId, int bucket) {}
+
+    private static final class HostTotals {
+        long pages;
+        long successes;
+        long errors;
+        long bytes;
+        long loadTime;
+        long firstSeen = Long.MAX_VALUE;
+        long lastSeen = Long.MIN_VALUE;
+    }
+
+    private final Map<HostKey, HostTotals> hosts = new HashMap<>();
+    private final Map<StatusKey, long[]> statuses = new HashMap<>();
+    private final Map<BucketKey, long[]> latencies = new HashMap<>();
+
+    void add(String sessionId, String host, CrawlResult result) {
+        int status = result.statusCode();
+        HostTotals totals = hosts.computeIfAbsent(new HostKey(sessionId, host), key -> new HostTotals());
+        totals.pages++;
+        if (status >= 200 && status < 300) totals.successes++;
+        if (status >= 400) totals.errors++;
+        totals.bytes += result.contentSize();
+        totals.loadTime += result.loadTime();
+        totals.firstSeen = Math.min(totals.firstSeen, result.timestamp());
+        totals.lastSeen = Math.max(totals.lastSeen, result.timestamp());
+
+        long[] byStatus = statuses.computeIfAbsent(new StatusKey(sessionId, status), key -> new long[2]);
+        byStatus[0]++;
+        byStatus[1] += result.contentSize();
+
+        latencies.computeIfAbsent(new BucketKey(sessionId, latencyBucket(result.loadTime())),
+                key -> new long[1])[0]++;
+    }
+
+    // Applies the accumulated deltas on the caller's transaction
+    void write(Connection conn) throws SQLException {
+        try (PreparedStatement host = conn.prepareStatement(UPSERT_HOST_SQL);
+             PreparedStatement status = conn.prepareStatement(UPSERT_STATUS_SQL);
+             PreparedStatement latency = conn.prepareStatement(UPSERT_LATENCY_SQL)) {
+            for (Map.Entry<HostKey, HostTotals> entry : hosts.entrySet()) {
+                HostTotals totals = entry.getValue();
+                host.setString(1, entry.getKey().sessionId());
+                host.setString(2, entry.getKey().host());
+                host.setLong(3, totals.pages);
+                host.setLong(4, totals.successes);
+                host.setLong(5, totals.errors);
+                host.setLong(6, totals.bytes);
+                host.setLong(7, totals.loadTime);
+                host.setLong(8, totals.firstSeen);
+                host.setLong(9, totals.lastSeen);
+                host.addBatch();
+            }
+            for (Map.Entry<StatusKey, long[]> entry : statuses.entrySet()) {
+                status.setString(1, entry.getKey().sessionId());
+                status.setInt(2, entry.getKey().statusCode());
+                status.setLong(3, entry.getValue()[0]);
+                status.setLong(4, entry.getValue()[1]);
+                status.addBatch();
+            }
+            for (Map.Entry<BucketKey, long[]> entry : latencies.entrySet()) {
+                latency.setString(1, entry.getKey().sessionId());
+                latency.setInt(2, entry.getKey().bucket());
+                latency.setLong(3, entry.getValue()[0]);
+                latency.addBatch();
+            }
+            if (!hosts.isEmpty()) host.executeBatch();
+            if (!statuses.isEmpty()) status.executeBatch();
+            if (!latencies.isEmpty()) latency.executeBatch();
+        }
+    }
+
+    static int latencyBucket(long millis) {
+        if (millis < EXACT_MS) return (int) Math.max(0, millis);
+        int shift = 63 - Long.numberOfLeadingZeros(millis);
+        int sub = (int) (millis >>> (shift - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+        return EXACT_MS + ((shift - EXACT_SHIFT) << SUB_BITS) + sub;
+    }
+
+    // Largest load time, in milliseconds, that falls into the bucket
+    static long bucketUpperMs(int bucket) {
+        return bucketLowerMs(bucket + 1) - 1;
+    }
+
+    private static long bucketLowerMs(int bucket) {
+        if (bucket < EXACT_MS) return bucket;
+        int shift = EXACT_SHIFT + ((bucket - EXACT_MS) >> SUB_BITS);
+        int sub = (bucket - EXACT_MS) & ((1 << SUB_BITS) - 1);
+        return (long) ((1 << SUB_BITS) + sub) << (shift - SUB_BITS);
+    }
+}
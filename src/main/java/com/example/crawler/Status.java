@@ -6,10 +6,11 @@ public record Status(
         boolean paused,
         int totalTasks,
         int completedTasks,
-        long duration
+        long duration,
+        long duplicateLinks  // Discovered links skipped because the URL was already seen
 ) {
     public Status(boolean running, int totalTasks, int completedTasks, long duration) {
-        this(running, false, totalTasks, completedTasks, duration);
+        this(running, false, totalTasks, completedTasks, duration, 0);
     }
 
     public int getProgressPercentage() {
@@ -0,0 +1,216 @@
+package com.example.crawler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// Crawl-scoped rules for which discovered URLs become tasks, built once when a
+// crawl starts and shared by all of its tasks. Links are canonicalized before
+// the filter and the seen-set look at them, so trivially different spellings
+// of one page are crawled once:
+//  - scheme and host lowercased, default ports (:80, :443) dropped
+//  - fragment removed, empty path becomes "/"
+//  - query parameters sorted by name (stable for repeated names), empty ones
+//    dropped, and known tracking parameters removed when enabled
+// Only http(s) URLs without characters that are illegal in a URI pass.
+class UrlPolicy {
+    private static final Set<String> TRACKING_PARAMS = Set.of(
+            "gclid", "dclid", "fbclid", "msclkid", "yclid", "igshid", "mc_cid", "mc_eid", "_ga", "_gl"
+    );
+
+    private final Pattern filter;
+    private final int maxDepth;
+    private final boolean stripTrackingParams;
+
+    UrlPolicy(String filter, int maxDepth, boolean stripTrackingParams) {
+        this.filter = filter != null && !filter.isEmpty() ? Pattern.compile(filter) : null;
+        this.maxDepth = maxDepth;
+        this.stripTrackingParams = stripTrackingParams;
+    }
+
+    static UrlPolicy create(CrawlRequest req) {
+        return new UrlPolicy(req.filter(), req.maxDepth(), req.stripTrackingParams());
+    }
+
+    // Links found on a page at this depth are followed only below maxDepth
+    boolean followsLinksFrom(int depth) {
+        return depth < maxDepth;
+    }
+
+    // Canonical form of the URL if it should be crawled, otherwise null. The
+    // filter regex is matched against the canonical form.
+    String accept(String url) {
+        String canonical = canonicalize(url);
+        if (canonical == null) return null;
+        if (filter != null && !filter.matcher(canonical).matches()) return null;
+        return canonical;
+    }
+
+    // Returns the input itself when it is already canonical
+    String canonicalize(String url) {
+        int length = url.length();
+        int colon = url.indexOf(':');
+        if (colon != 4 && colon != 5) return null;
+        boolean https = colon == 5;
+        if (!url.regionMatches(true, 0, https ? "https" : "http", 0, colon)) return null;
+        if (!url.startsWith("//", colon + 1)) return null;
+
+        int hostStart = colon + 3;
+        int authorityEnd = hostStart;
+        while (authorityEnd < length) {
+            char c = url.charAt(authorityEnd);
+            if (c == '/' || c == '?' || c == '#') break;
+            authorityEnd++;
+        }
+        int fragment = url.indexOf('#', authorityEnd);
+        int end = fragment >= 0 ? fragment : length;
+        int query = url.indexOf('?', authorityEnd);
+        if (query >= end) query = -1;
+
+        if (!validChars(url, hostStart, authorityEnd, true) || !validChars(url, authorityEnd, end, false)) return null;
+
+        // Authority: [userinfo@]host[:port]
+        int at = url.lastIndexOf('@', authorityEnd - 1);
+        int hostBegin = at >= hostStart ? at + 1 : hostStart;
+        int portColon = -1;
+        for (int i = authorityEnd - 1; i >= hostBegin; i--) {
+            char c = url.charAt(i);
+            if (c == ':') {
+                portColon = i;
+                break;
+            }
+            if (c == ']') break;
+        }
+        int hostEnd = portColon >= 0 ? portColon : authorityEnd;
+        if (hostEnd == hostBegin) return null;
+        boolean dropPort = false;
+        if (portColon >= 0) {
+            if (portColon + 1 == authorityEnd) {
+                dropPort = true; // "host:" with an empty port
+            } else {
+                for (int i = portColon + 1; i < authorityEnd; i++) {
+                    char c = url.charAt(i);
+                    if (c < '0' || c > '9') return null;
+                }
+                String port = url.substring(portColon + 1, authorityEnd);
+                dropPort = https ? port.equals("443") : port.equals("80");
+            }
+        }
+
+        boolean lowerScheme = isLower(url, 0, colon);
+        boolean lowerHost = isLower(url, hostBegin, hostEnd);
+        boolean emptyPath = authorityEnd == end || authorityEnd == query;
+        String canonicalQuery = query >= 0 ? canonicalQuery(url, query + 1, end) : null;
+        // A query that canonicalizes to nothing, e.g. a bare "?", is dropped
+        boolean queryUnchanged = query < 0 ? true : canonicalQuery != null
+                && !canonicalQuery.isEmpty()
+                && canonicalQuery.length() == end - query - 1
+                && url.startsWith(canonicalQuery, query + 1);
+
+        if (lowerScheme && lowerHost && !dropPort && !emptyPath && fragment < 0 && queryUnchanged) {
+            return url;
+        }
+
+        StringBuilder out = new StringBuilder(end + 1);
+        out.append(https ? "https://" : "http://");
+        out.append(url, hostStart, hostBegin);
+        appendLower(out, url, hostBegin, hostEnd);
+        if (portColon >= 0 && !dropPort) {
+            out.append(url, portColon, authorityEnd);
+        }
+        int pathEnd = query >= 0 ? query : end;
+        if (authorityEnd == pathEnd) {
+            out.append('/');
+        } else {
+            out.append(url, authorityEnd, pathEnd);
+        }
+        if (canonicalQuery != null && !canonicalQuery.isEmpty()) {
+            out.append('?').append(canonicalQuery);
+        }
+        return out.toString();
+    }
+
+    // Sorted, cleaned query string (without '?'), or "" when nothing is left
+    private String canonicalQuery(String url, int start, int end) {
+        List<String> params = null;
+        boolean sorted = true;
+        String previousName = null;
+        int i = start;
+        while (i <= end) {
+            int amp = url.indexOf('&', i);
+            int paramEnd = amp < 0 || amp > end ? end : amp;
+            if (paramEnd > i) {
+                String param = url.substring(i, paramEnd);
+                String name = paramName(param);
+                if (!(stripTrackingParams && isTracking(name))) {
+                    if (params == null) params = new ArrayList<>();
+                    if (previousName != null && previousName.compareTo(name) > 0) {
+                        sorted = false;
+                    }
+                    previousName = name;
+                    params.add(param);
+                }
+            }
+            i = paramEnd + 1;
+        }
+        if (params == null) return "";
+        if (!sorted) {
+            // List.sort is stable, so repeated names keep their order
+            params.sort((a, b) -> paramName(a).compareTo(paramName(b)));
+        }
+        return String.join("&", params);
+    }
+
+    private static String paramName(String param) {
+        int eq = param.indexOf('=');
+        return eq < 0 ? param : param.substring(0, eq);
+    }
+
+    private static boolean isTracking(String name) {
+        return name.startsWith("utm_") || TRACKING_PARAMS.contains(name);
+    }
+
+    // Rejects what java.net.URI would: spaces, controls, the unwise ASCII set,
+    // brackets outside the host and malformed percent escapes
+    private static boolean validChars(String url, int start, int end, boolean authority) {
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            if (c <= ' ' || c == 0x7f) return false;
+            switch (c) {
+                case '"', '<', '>', '\\', '^', '`', '{', '|', '}':
+                    return false;
+                case '[', ']':
+                    if (!authority) return false;
+                    break;
+                case '%':
+                    if (i + 2 >= end || !isHex(url.charAt(i + 1)) || !isHex(url.charAt(i + 2))) return false;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static boolean isLower(String s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= 'A' && c <= 'Z') return false;
+        }
+        return true;
+    }
+
+    private static void appendLower(StringBuilder out, String s, int start, int end) {
+        if (isLower(s, start, end)) {
+            out.append(s, start, end);
+        } else {
+            out.append(s.substring(start, end).toLowerCase(Locale.ROOT));
+        }
+    }
+}
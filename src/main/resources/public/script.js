@@ -21,7 +21,14 @@ document.addEventListener('DOMContentLoaded', () => {
 
     loadDbBtn.addEventListener('click', async () => {
         try {
-            const results = await fetch('/api/db-results').then(r => r.json());
+            // Page through the table with the id cursor instead of one huge response
+            const results = [];
+            let cursor = 0;
+            do {
+                const page = await fetch(`/api/db-results?limit=5000&after=${cursor}`).then(r => r.json());
+                results.push(...page.results);
+                cursor = page.nextCursor;
+            } while (cursor !== undefined);
             crawlResults = results.map((r, i) => ({...r, index: i + 1}));
             handleSearch();           // re‑apply filters / sorting / render
             showToast(`Loaded ${crawlResults.length} rows from database`);
@@ -42,10 +49,15 @@ document.addEventListener('DOMContentLoaded', () => {
     let pollInterval = null;
     let crawlStartTime = null;
     let isPaused = false;
+    let lastSeq = 0;             // last result sequence number received from /api/results
+    let resultsEpoch = null;     // numbering lastSeq belongs to; changes when the server restarts
+    let warnedTruncated = false;
+    let events = null;           // EventSource for /api/events, when the browser supports it
 
     initializeTabs();
     loadSettings();
     createNotificationContainer();
+    connectEvents();
 
     // Add event listeners
     startBtn.addEventListener('click', startCrawl);
@@ -166,6 +178,8 @@ document.addEventListener('DOMContentLoaded', () => {
             if (!isPaused) {
                 crawlResults = [];
                 filteredResults = [];
+                lastSeq = 0;
+                warnedTruncated = false;
                 updateResultsStats();
                 renderResults();
                 crawlStartTime = Date.now();
@@ -185,7 +199,10 @@ document.addEventListener('DOMContentLoaded', () => {
                     delay: parseInt(document.getElementById('delay').value),
                     userAgent: document.getElementById('userAgent').value,
                     filter: document.getElementById('filter').value,
-                    timeout: parseInt(document.getElementById('timeout').value)
+                    timeout: parseInt(document.getElementById('timeout').value),
+                    executionMode: document.getElementById('executionMode').value,
+                    maxInFlight: parseInt(document.getElementById('maxInFlight').value),
+                    extractionMode: document.getElementById('extractionMode').value
                 })
             });
 
@@ -199,7 +216,8 @@ document.addEventListener('DOMContentLoaded', () => {
 
             clearInterval(pollInterval);
             const autoRefreshSeconds = parseInt(document.getElementById('auto-refresh').value);
-            if (autoRefreshSeconds > 0) {
+            // Polling is only the fallback when the event stream is not connected
+            if (autoRefreshSeconds > 0 && !eventsConnected()) {
                 pollInterval = setInterval(pollStatus, autoRefreshSeconds * 1000);
             }
 
@@ -260,6 +278,8 @@ document.addEventListener('DOMContentLoaded', () => {
 
         crawlResults = [];
         filteredResults = [];
+        lastSeq = 0;
+        warnedTruncated = false;
         currentPage = 1;
         sortField = 'index';
         sortDirection = 'asc';
@@ -273,6 +293,9 @@ document.addEventListener('DOMContentLoaded', () => {
         document.getElementById('timeout').value = 10000;
         document.getElementById('userAgent').value = 'MultiCrawlerBot/1.0';
         document.getElementById('filter').value = '';
+        document.getElementById('executionMode').value = 'platform';
+        document.getElementById('maxInFlight').value = 256;
+        document.getElementById('extractionMode').value = 'dom';
 
         statusEl.textContent = 'Idle';
         progressBar.style.width = '0%';
@@ -317,51 +340,87 @@ document.addEventListener('DOMContentLoaded', () => {
         }
     }
 
+    // Live updates pushed by the server; the browser reconnects on its own and
+    // resumes from the last event id it received
+    function connectEvents() {
+        if (!window.EventSource) return;
+        events = new EventSource(`/api/events?since=${lastSeq}`);
+        events.addEventListener('results', e => appendResults(JSON.parse(e.data)));
+        events.addEventListener('status', e => {
+            if (isPolling || isPaused) applyStatus(JSON.parse(e.data));
+        });
+    }
+
+    function eventsConnected() {
+        return events !== null && events.readyState === EventSource.OPEN;
+    }
+
+    // Adds rows from /api/results or a pushed batch, skipping any already shown
+    function appendResults(page) {
+        if (resultsEpoch !== null && page.epoch !== resultsEpoch) {
+            lastSeq = 0;         // server restarted and its sequence numbers began again
+        }
+        resultsEpoch = page.epoch;
+        const fresh = page.results.filter(r => r.seq > lastSeq);
+        lastSeq = Math.max(lastSeq, page.lastSeq);
+        if (page.truncated && !warnedTruncated) {
+            warnedTruncated = true;
+            showToast('Older results were dropped from memory; use Load DB to see them all');
+        }
+        if (fresh.length === 0) return;
+
+        const offset = crawlResults.length;
+        crawlResults.push(...fresh.map((r, i) => ({...r, index: offset + i + 1})));
+
+        updateResultsStats();
+        handleSearch();
+        updateVisualizations();
+    }
+
     async function pollStatus() {
         try {
             const statusResponse = await fetch('/api/status');
             const status = await statusResponse.json();
 
-            statusEl.textContent = JSON.stringify(status, null, 2);
-
-            if (status.totalTasks > 0) {
-                const progress = (status.completedTasks / status.totalTasks) * 100;
-                progressBar.style.width = `${progress}%`;
-            }
-
-            if (status.duration) {
-                document.getElementById('stats-time').textContent = formatTime(status.duration);
-            }
+            // Only fetch what was added since the last poll
+            const page = await fetch(`/api/results?since=${lastSeq}`).then(r => r.json());
+            appendResults(page);
+            applyStatus(status);
+        } catch (error) {
+            console.error('Error polling status:', error);
+        }
+    }
 
-            const resultsResponse = await fetch('/api/results');
-            const results = await resultsResponse.json();
-            crawlResults = results.map((r, i) => ({...r, index: i + 1}));
+    function applyStatus(status) {
+        statusEl.textContent = JSON.stringify(status, null, 2);
 
-            updateResultsStats();
-            handleSearch();
-            updateVisualizations();
+        if (status.totalTasks > 0) {
+            const progress = (status.completedTasks / status.totalTasks) * 100;
+            progressBar.style.width = `${progress}%`;
+        }
 
-            if (status.paused) {
-                startBtn.disabled = false;
-                stopBtn.disabled = false;
-                stopBtn.innerHTML = '<i class="fas fa-times"></i> Terminate';
-                return;
-            }
+        if (status.duration) {
+            document.getElementById('stats-time').textContent = formatTime(status.duration);
+        }
 
-            if (!status.running && !status.paused && isPolling) {
-                clearInterval(pollInterval);
-                isPolling = false;
-                startBtn.disabled = false;
-                stopBtn.disabled = true;
+        if (status.paused) {
+            startBtn.disabled = false;
+            stopBtn.disabled = false;
+            stopBtn.innerHTML = '<i class="fas fa-times"></i> Terminate';
+            return;
+        }
 
-                if (status.duration) {
-                    document.getElementById('stats-time').textContent = formatTime(status.duration);
-                }
+        if (!status.running && !status.paused && isPolling) {
+            clearInterval(pollInterval);
+            isPolling = false;
+            startBtn.disabled = false;
+            stopBtn.disabled = true;
 
-                showToast('Crawl complete!');
+            if (status.duration) {
+                document.getElementById('stats-time').textContent = formatTime(status.duration);
             }
-        } catch (error) {
-            console.error('Error polling status:', error);
+
+            showToast('Crawl complete!');
         }
     }
 
@@ -0,0 +1,108 @@
+package com.example.crawler;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// The streaming extractor must decode a page the way the DOM path does, so
+// every case is checked against Jsoup.parse on the same bytes
+class LinkExtractorTest {
+    private static final String URL = "https://example.org/dir/page.html";
+    private static final Charset SHIFT_JIS = Charset.forName("Shift_JIS");
+    private static final Charset WINDOWS_1251 = Charset.forName("windows-1251");
+
+    @Test
+    void metaCharsetDecidesWhenTheResponseNamesNone() throws IOException {
+        String html = "<html><head><meta charset=\"Shift_JIS\"><title>日本語のページ</title></head>"
+                + "<body><a href=\"/検索?q=東京\">東京</a></body></html>";
+        Set<String> links = assertSameAsJsoup(html.getBytes(SHIFT_JIS), null, "日本語のページ");
+        assertEquals(Set.of("https://example.org/%E6%A4%9C%E7%B4%A2?q=%E6%9D%B1%E4%BA%AC"),
+                encoded(links));
+    }
+
+    @Test
+    void httpEquivContentTypeDecidesWhenTheResponseNamesNone() throws IOException {
+        String html = "<html><head><META HTTP-EQUIV='Content-Type' CONTENT='text/html; charset=windows-1251'>"
+                + "<title>Новости дня</title></head><body><a href='новости.html'>x</a></body></html>";
+        assertSameAsJsoup(html.getBytes(WINDOWS_1251), null, "Новости дня");
+    }
+
+    @Test
+    void responseCharsetWinsOverMeta() throws IOException {
+        String html = "<html><head><meta charset=\"windows-1251\"><title>café</title></head></html>";
+        assertSameAsJsoup(html.getBytes(StandardCharsets.UTF_8), "UTF-8", "café");
+    }
+
+    @Test
+    void byteOrderMarkWinsOverEverything() throws IOException {
+        String html = "<html><head><meta charset=\"windows-1251\"><title>Ünïcödé</title></head>"
+                + "<body><a href=\"/ü\">x</a></body></html>";
+        byte[] utf8 = html.getBytes(StandardCharsets.UTF_8);
+        byte[] withBom = new byte[utf8.length + 3];
+        withBom[0] = (byte) 0xEF;
+        withBom[1] = (byte) 0xBB;
+        withBom[2] = (byte) 0xBF;
+        System.arraycopy(utf8, 0, withBom, 3, utf8.length);
+        assertSameAsJsoup(withBom, "ISO-8859-1", "Ünïcödé");
+
+        byte[] utf16 = ("﻿" + html).getBytes(StandardCharsets.UTF_16LE);
+        assertSameAsJsoup(utf16, null, "Ünïcödé");
+    }
+
+    @Test
+    void commentedOutAndLateMetasAreIgnored() throws IOException {
+        String commented = "<html><head><!-- <meta charset=\"windows-1251\"> --><title>naïve</title></head></html>";
+        assertSameAsJsoup(commented.getBytes(StandardCharsets.UTF_8), null, "naïve");
+
+        String late = "<html><head><title>Ёлка</title></head><body>" + "<p>filler</p>".repeat(600)
+                + "<meta charset=\"windows-1251\"><a href=\"/a\">a</a></body></html>";
+        assertSameAsJsoup(late.getBytes(WINDOWS_1251), null, null);
+    }
+
+    @Test
+    void unknownCharsetFallsBackToUtf8() throws IOException {
+        String html = "<html><head><meta charset=\"no-such-charset\"><title>résumé</title></head></html>";
+        assertSameAsJsoup(html.getBytes(StandardCharsets.UTF_8), null, "résumé");
+    }
+
+    // Returns the links both paths found
+    private static Set<String> assertSameAsJsoup(byte[] page, String charset, String expectedTitle)
+            throws IOException {
+        Document doc = Jsoup.parse(new ByteArrayInputStream(page), charset, URL);
+        Set<String> domLinks = new LinkedHashSet<>();
+        for (Element anchor : doc.select("a[href]")) {
+            domLinks.add(anchor.attr("abs:href"));
+        }
+        LinkExtractor.Extraction extraction = LinkExtractor.extract(new ByteArrayInputStream(page), charset, URL, true);
+        assertEquals(doc.title(), extraction.title() == null ? "" : extraction.title());
+        if (expectedTitle != null) {
+            assertEquals(expectedTitle, extraction.title());
+        }
+        assertEquals(encoded(domLinks), encoded(extraction.links()));
+        return extraction.links();
+    }
+
+    // Jsoup and java.net.URL differ in whether they percent-encode non-ASCII;
+    // what matters here is that both decoded the same characters
+    private static Set<String> encoded(Set<String> links) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String link : links) {
+            StringBuilder sb = new StringBuilder();
+            for (byte b : link.getBytes(StandardCharsets.UTF_8)) {
+                sb.append(b < 0 ? String.format("%%%02X", b & 0xFF) : String.valueOf((char) b));
+            }
+            result.add(sb.toString());
+        }
+        return result;
+    }
+}
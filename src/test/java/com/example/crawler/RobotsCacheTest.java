@@ -0,0 +1,187 @@
+package com.example.crawler;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// RobotsCache against stub servers on 127.0.0.1: two ports are two origins
+// of the same host, each with its own robots.txt
+class RobotsCacheTest {
+    private static final String AGENT = "multicrawlerbot";
+    private static final int TIMEOUT_MS = 5000;
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final Map<Integer, AtomicInteger> robotsRequests = new ConcurrentHashMap<>();
+    private final Fetcher fetcher = new JsoupFetcher("MultiCrawlerBot/1.0", TIMEOUT_MS);
+    private RobotsCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new RobotsCache();
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (HttpServer server : servers) {
+            server.stop(0);
+        }
+        fetcher.close();
+    }
+
+    @Test
+    void fetchesEachOriginOnce() {
+        String origin = serve(200, "User-agent: *\nDisallow: /private/\n");
+        RobotsTxt first = cache.rulesFor(origin + "/a", fetcher, TIMEOUT_MS);
+        RobotsTxt second = cache.rulesFor(origin + "/private/b?q=1", fetcher, TIMEOUT_MS);
+        assertSame(first, second);
+        assertFalse(first.isAllowed(AGENT, RobotsCache.pathOf(origin + "/private/b?q=1")));
+        assertEquals(1, requestsTo(origin));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void portsOfTheSameHostAreSeparateOrigins() {
+        String open = serve(200, "User-agent: *\nDisallow:\n");
+        String closed = serve(200, "User-agent: *\nDisallow: /\n");
+        assertEquals(Frontier.hostOf(open), Frontier.hostOf(closed));
+
+        assertTrue(cache.rulesFor(open + "/page", fetcher, TIMEOUT_MS).isAllowed(AGENT, "/page"));
+        assertFalse(cache.rulesFor(closed + "/page", fetcher, TIMEOUT_MS).isAllowed(AGENT, "/page"));
+        assertEquals(1, requestsTo(open));
+        assertEquals(1, requestsTo(closed));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void concurrentMissesShareOneFetch() throws Exception {
+        String origin = serve(200, "User-agent: *\nDisallow: /x\n");
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<RobotsTxt>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String url = origin + "/page" + i;
+                results.add(pool.submit(() -> cache.rulesFor(url, fetcher, TIMEOUT_MS)));
+            }
+            RobotsTxt first = results.get(0).get();
+            for (Future<RobotsTxt> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, requestsTo(origin));
+    }
+
+    @Test
+    void missingRobotsAllowsAllAndServerErrorIsUnreachable() {
+        String missing = serve(404, "");
+        String failing = serve(503, "");
+        assertSame(RobotsTxt.ALLOW_ALL, cache.rulesFor(missing + "/", fetcher, TIMEOUT_MS));
+        assertSame(RobotsTxt.UNREACHABLE, cache.rulesFor(failing + "/", fetcher, TIMEOUT_MS));
+    }
+
+    @Test
+    void expiredEntriesAreFetchedAgain() {
+        cache = new RobotsCache(10, 0);
+        String origin = serve(200, "User-agent: *\nDisallow:\n");
+        cache.rulesFor(origin + "/", fetcher, TIMEOUT_MS);
+        cache.rulesFor(origin + "/", fetcher, TIMEOUT_MS);
+        assertEquals(2, requestsTo(origin));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedOrigin() {
+        cache = new RobotsCache(2, RobotsCache.DEFAULT_TTL_MS);
+        String a = serve(200, "");
+        String b = serve(200, "");
+        String c = serve(200, "");
+        cache.rulesFor(a + "/", fetcher, TIMEOUT_MS);
+        cache.rulesFor(b + "/", fetcher, TIMEOUT_MS);
+        cache.rulesFor(a + "/", fetcher, TIMEOUT_MS);
+        cache.rulesFor(c + "/", fetcher, TIMEOUT_MS);
+        cache.rulesFor(a + "/", fetcher, TIMEOUT_MS);
+        cache.rulesFor(b + "/", fetcher, TIMEOUT_MS);
+        assertEquals(1, requestsTo(a));
+        assertEquals(2, requestsTo(b));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void crawlDelayFromTheServedFileReachesTheHostController() {
+        String origin = serve(200, """
+                User-agent: *
+                Crawl-delay: 2
+
+                User-agent: MultiCrawlerBot
+                Crawl-delay: 0.25
+                """);
+        RobotsTxt robots = cache.rulesFor(origin + "/", fetcher, TIMEOUT_MS);
+        assertEquals(250, robots.crawlDelayMs(AGENT));
+        assertEquals(2000, robots.crawlDelayMs("otherbot"));
+
+        HostController hosts = new HostController(false, Integer.MAX_VALUE, TIMEOUT_MS);
+        String host = Frontier.hostOf(origin);
+        hosts.setCrawlDelay(host, robots.crawlDelayMs(AGENT));
+        assertEquals(250, hosts.crawlDelay(host));
+    }
+
+    @Test
+    void originAndPathSplitAtTheAuthority() {
+        assertEquals("https://example.org:8443", RobotsCache.originOf("https://example.org:8443/a/b?c#d"));
+        assertEquals("https://example.org", RobotsCache.originOf("https://example.org?q"));
+        assertEquals("https://example.org/robots.txt", RobotsCache.robotsUrl("https://example.org/x/y"));
+        assertEquals("/a/b?c", RobotsCache.pathOf("https://example.org:8443/a/b?c#d"));
+        assertEquals("/?q", RobotsCache.pathOf("https://example.org?q"));
+        assertEquals("/", RobotsCache.pathOf("https://example.org"));
+    }
+
+    // Starts a server answering /robots.txt with the given status and body;
+    // returns its origin
+    private String serve(int status, String robots) {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            int port = server.getAddress().getPort();
+            AtomicInteger requests = new AtomicInteger();
+            robotsRequests.put(port, requests);
+            server.createContext("/robots.txt", exchange -> {
+                requests.incrementAndGet();
+                byte[] body = robots.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "text/plain");
+                exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+                if (body.length > 0) {
+                    exchange.getResponseBody().write(body);
+                }
+                exchange.close();
+            });
+            server.start();
+            servers.add(server);
+            return "http://127.0.0.1:" + port;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int requestsTo(String origin) {
+        int port = Integer.parseInt(origin.substring(origin.lastIndexOf(':') + 1));
+        return robotsRequests.get(port).get();
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.crawler;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RobotsTxtTest {
+    private static final String AGENT = "multicrawlerbot";
+
+    @Test
+    void usesTheGroupNamingTheAgentOverTheStarGroup() {
+        RobotsTxt robots = RobotsTxt.parse("""
+                User-agent: *
+                Disallow: /
+
+                User-agent: MultiCrawlerBot
+                Disallow: /private/
+                """);
+        assertTrue(robots.isAllowed(AGENT, "/public/page"));
+        assertFalse(robots.isAllowed(AGENT, "/private/page"));
+        assertFalse(robots.isAllowed("otherbot", "/public/page"));
+    }
+
+    @Test
+    void consecutiveUserAgentLinesShareTheirGroup() {
+        RobotsTxt robots = RobotsTxt.parse("""
+                User-agent: a
+                User-agent: b
+                Disallow: /x
+                User-agent: c
+                Disallow: /y
+                """);
+        assertFalse(robots.isAllowed("a", "/x"));
+        assertFalse(robots.isAllowed("b", "/x"));
+        assertTrue(robots.isAllowed("b", "/y"));
+        assertFalse(robots.isAllowed("c", "/y"));
+    }
+
+    @Test
+    void longestMatchWinsAndAllowWinsTies() {
+        RobotsTxt robots = RobotsTxt.parse("""
+                User-agent: *
+                Disallow: /docs/
+                Allow: /docs/public/
+                Disallow: /same
+                Allow: /same
+                """);
+        assertFalse(robots.isAllowed(AGENT, "/docs/internal"));
+        assertTrue(robots.isAllowed(AGENT, "/docs/public/a"));
+        assertTrue(robots.isAllowed(AGENT, "/same/page"));
+    }
+
+    @Test
+    void emptyDisallowAndMissingGroupAllowEverything() {
+        assertTrue(RobotsTxt.parse("User-agent: *\nDisallow:\n").isAllowed(AGENT, "/anything"));
+        assertTrue(RobotsTxt.parse("User-agent: otherbot\nDisallow: /\n").isAllowed(AGENT, "/anything"));
+        assertTrue(RobotsTxt.parse("User-agent: *\nDisallow: /\n").isAllowed(AGENT, "/robots.txt"));
+    }
+
+    @Test
+    void commentsAndLineEndingsAreIgnored() {
+        RobotsTxt robots = RobotsTxt.parse("User-agent: * # everyone\r\nDisallow: /a # not /b\rDisallow: /c\n");
+        assertFalse(robots.isAllowed(AGENT, "/a"));
+        assertTrue(robots.isAllowed(AGENT, "/b"));
+        assertFalse(robots.isAllowed(AGENT, "/c"));
+    }
+
+    @Test
+    void wildcardsMatchAnyRunAndDollarAnchorsTheEnd() {
+        assertTrue(RobotsTxt.matches("/*.php", "/index.php?x=1"));
+        assertTrue(RobotsTxt.matches("/*.php$", "/a/b.php"));
+        assertFalse(RobotsTxt.matches("/*.php$", "/a/b.php?x=1"));
+        assertTrue(RobotsTxt.matches("/a*b*c", "/a-b-c-d"));
+        assertFalse(RobotsTxt.matches("/a*b*c", "/a-c-b"));
+        assertTrue(RobotsTxt.matches("/exact$", "/exact"));
+        assertFalse(RobotsTxt.matches("/exact$", "/exactly"));
+        assertTrue(RobotsTxt.matches("*", "/"));
+        assertTrue(RobotsTxt.matches("/fish", "/fish.html"));
+        assertFalse(RobotsTxt.matches("/fish", "/Fish.html"));
+    }
+
+    @Test
+    void hostileWildcardPatternMatchesInLinearTime() {
+        RobotsTxt robots = RobotsTxt.parse("User-agent: *\nDisallow: /*a*a*a*a*a*a*a*a*a*a*a*a*b\n");
+        String path = "/" + "a".repeat(10_000);
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () -> assertTrue(robots.isAllowed(AGENT, path)));
+    }
+
+    @Test
+    void crawlDelayIsReadPerGroupAndCapped() {
+        RobotsTxt robots = RobotsTxt.parse("""
+                User-agent: *
+                Crawl-delay: 1.5
+
+                User-agent: slowbot
+                Crawl-delay: 3600
+
+                User-agent: badbot
+                Crawl-delay: soon
+                """);
+        assertEquals(1500, robots.crawlDelayMs(AGENT));
+        assertEquals(60_000, robots.crawlDelayMs("slowbot"));
+        assertEquals(0, robots.crawlDelayMs("badbot"));
+    }
+
+    @Test
+    void sitemapsAreKeptOutsideGroups() {
+        RobotsTxt robots = RobotsTxt.parse("""
+                Sitemap: https://example.org/sitemap.xml
+                User-agent: *
+                Disallow: /tmp/
+                Sitemap: https://example.org/news.xml
+                """);
+        assertEquals(List.of("https://example.org/sitemap.xml", "https://example.org/news.xml"), robots.sitemaps());
+    }
+
+    @Test
+    void agentTokenIsTheLowercasedProductName() {
+        assertEquals("multicrawlerbot", RobotsTxt.agentToken("MultiCrawlerBot/1.0 (+https://example.org/bot)"));
+        assertEquals("my-bot_2", RobotsTxt.agentToken("My-Bot_2"));
+    }
+
+    @Test
+    void unreachableDisallowsEverythingAndAllowAllNothing() {
+        assertFalse(RobotsTxt.UNREACHABLE.isAllowed(AGENT, "/"));
+        assertTrue(RobotsTxt.UNREACHABLE.isUnreachable());
+        assertTrue(RobotsTxt.ALLOW_ALL.isAllowed(AGENT, "/anything"));
+    }
+}